@@ -0,0 +1,245 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import dataStructures.*;
+
+/**
+* Runs the guessing strategies a real cracker would use, instead of the
+* exhaustive search in alphabet order, and records how long each one takes
+* to reach every valid password it guesses.
+*
+* The strategies are
+*   mask   candidates matching masks such as ?l?l?n?s?s, smallest masks first (see MaskAttack)
+*   rules  words from a wordlist transformed by hashcat-style rules (see RuleAttack)
+* Each is a numbered stream of guesses. The stream is cut into chunks of
+* CHUNK guesses that worker threads, one per core, take in order, so guesses
+* are made roughly in stream order. Every guess goes through
+* pw_check.validatePassword(), and the valid ones are recorded with the time
+* since the strategy started, in ms. The times are written to
+* attack_<strategy>.idx, a PasswordIndex like all_passwords.idx.
+*
+* -check opens the indexes that exist (see openIndexes) and reports, for a
+* valid password, the fastest of the attacks and the exhaustive search.
+*
+* @author Craig Mazzotta
+*/
+public class AttackEngine {
+  public static final String[] STRATEGIES = {"mask", "rules"}; //names of the strategies, in the order they run
+  private static final int CHUNK = 1 << 16; //guesses handed to a worker at a time
+  private static final PasswordIndex[] indexes = new PasswordIndex[STRATEGIES.length]; //opened by openIndexes(), null if missing
+
+  /**
+  * A numbered stream of guesses. Guess g can be made without making the
+  * ones before it, so the stream can be split between threads.
+  */
+  public interface Strategy {
+    /**
+    * @return The name of the strategy
+    */
+    String name();
+
+    /**
+    * @return The number of guesses in the stream
+    */
+    long size();
+
+    /**
+    * @param g The number of the guess, from 0 to size()-1
+    * @param out Receives the guess, replacing its contents
+    * @return False if there is no guess with that number (e.g. a rule rejected the word)
+    */
+    boolean guess(long g, StringBuilder out);
+  }
+
+  /**
+  * Runs every strategy, writing attack_<strategy>.idx for each.
+  * createDictionary() must already have been called.
+  *
+  * @param args Command-line arguments: "-masks <file>", "-rules <file>" and
+  *     "-wordlist <file>" replace the default masks, rules and words
+  */
+  public static void run(String[] args) {
+    try {
+      String masks = pw_check.optionValue(args, "-masks");
+      String rules = pw_check.optionValue(args, "-rules");
+      String wordlist = pw_check.optionValue(args, "-wordlist");
+      attack(masks == null ? MaskAttack.defaults(pw_check.policy)
+        : new MaskAttack(pw_check.policy, readLines(new File(masks))));
+      attack(new RuleAttack(readWords(new File(wordlist == null ? "dictionary.txt" : wordlist)),
+        rules == null ? RuleAttack.defaultRules(pw_check.policy) : readLines(new File(rules))));
+    }
+    catch (IllegalArgumentException e) {
+      System.out.println("Invalid attack: " + e.getMessage());
+      System.exit(1);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to run the attacks: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+  * @param name The name of a strategy
+  * @return The file its times are written to
+  */
+  public static File indexFile(String name) {
+    return new File("attack_" + name + ".idx");
+  }
+
+  /**
+  * Runs one strategy over every core and writes its index.
+  *
+  * @param strategy The strategy
+  * @throws IOException If the index can't be written
+  */
+  private static void attack(Strategy strategy) throws IOException {
+    PasswordIndex.Builder cracked = new PasswordIndex.Builder(pw_check.characters, pw_check.policy.length());
+    long chunks = (strategy.size() + CHUNK - 1) / CHUNK;
+    AtomicLong nextChunk = new AtomicLong();
+    AtomicLong valid = new AtomicLong(); //valid guesses, counting repeats
+    long startTime = System.nanoTime();
+    int workers = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(workers);
+    try {
+      List<Future<?>> running = new ArrayList<Future<?>>();
+      for(int w = 0; w < workers; w++){
+        running.add(pool.submit(() -> {
+          StringBuilder guess = new StringBuilder();
+          StringBuilder hits = new StringBuilder(); //valid guesses of the chunk, back to back
+          double[] times = new double[CHUNK]; //time each was reached
+          long c;
+          while((c = nextChunk.getAndIncrement()) < chunks){
+            long end = Math.min(strategy.size(), (c+1) * CHUNK);
+            int n = 0;
+            for(long g = c * CHUNK; g < end; g++){
+              if(strategy.guess(g, guess) && pw_check.validatePassword(guess)){
+                hits.append(guess);
+                times[n++] = (System.nanoTime() - startTime)/1000000.0; //time to reach the password
+              }
+            }
+            synchronized(cracked){
+              for(int i = 0; i < n; i++){
+                cracked.add(hits, i * pw_check.policy.length(), times[i]);
+              }
+            }
+            valid.addAndGet(n);
+            hits.setLength(0);
+          }
+        }));
+      }
+      for(Future<?> worker : running){
+        worker.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while running the " + strategy.name() + " attack");
+    }
+    catch (ExecutionException e) {
+      throw new IOException("The " + strategy.name() + " attack failed", e.getCause());
+    }
+    finally {
+      pool.shutdownNow();
+    }
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    cracked.write(indexFile(strategy.name()));
+    System.out.println(strategy.name() + ": " + strategy.size() + " guesses, " + valid.get() + " valid, "
+      + cracked.size() + " distinct passwords cracked in " + seconds + " s, "
+      + Math.round(strategy.size() / seconds) + " guesses/s");
+  }
+
+  /**
+  * Opens the attack_<strategy>.idx files written by -attack, for -check.
+  * Missing or unreadable ones are skipped.
+  */
+  public static void openIndexes() {
+    for(int i = 0; i < STRATEGIES.length; i++){
+      File file = indexFile(STRATEGIES[i]);
+      indexes[i] = null;
+      if(!file.exists()){
+        continue;
+      }
+      try {
+        indexes[i] = PasswordIndex.open(file, pw_check.characters);
+        if(indexes[i].length() != pw_check.policy.length()){
+          indexes[i] = null;
+        }
+      }
+      catch (IOException e) {
+        System.out.println("Unable to read " + file + " (" + e.getMessage() + "), skipping it");
+      }
+    }
+  }
+
+  /**
+  * Prints the fastest way a valid password is cracked: by one of the attacks
+  * opened by openIndexes(), or by the exhaustive search.
+  *
+  * @param password A valid password
+  * @param exhaustive The time the exhaustive search took to reach it, in ms
+  */
+  public static void printFastest(String password, float exhaustive) {
+    String fastest = "the exhaustive search";
+    float best = exhaustive;
+    boolean any = false;
+    for(int i = 0; i < STRATEGIES.length; i++){
+      if(indexes[i] == null){
+        continue;
+      }
+      any = true;
+      float time = indexes[i].get(password);
+      if(Float.isNaN(time)){
+        System.out.println("  the " + STRATEGIES[i] + " attack never guesses it");
+      } else {
+        System.out.println("  the " + STRATEGIES[i] + " attack guesses it after " + time + " ms");
+        if(time < best){
+          best = time;
+          fastest = "the " + STRATEGIES[i] + " attack";
+        }
+      }
+    }
+    if(any){
+      System.out.println("Fastest: " + fastest + ", " + best + " ms");
+    }
+  }
+
+  /**
+  * @param file A file with one entry per line
+  * @return The lines that aren't blank or comments (starting with #)
+  */
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+      String line;
+      while((line = in.readLine()) != null){
+        if(!line.trim().isEmpty() && !line.startsWith("#")){
+          lines.add(line);
+        }
+      }
+    }
+    return lines;
+  }
+
+  /**
+  * @param file A wordlist, one word per line
+  * @return The lowercased words, each once, in the order they first appear
+  */
+  private static List<String> readWords(File file) throws IOException {
+    LinkedHashSet<String> words = new LinkedHashSet<String>();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+      String line;
+      while((line = in.readLine()) != null){
+        if(!line.isEmpty()){
+          words.add(line.toLowerCase());
+        }
+      }
+    }
+    return new ArrayList<String>(words);
+  }
+}
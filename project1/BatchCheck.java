@@ -0,0 +1,228 @@
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+* Batch version of pw_check.checkPass(): checks every password listed in a
+* file, one per line, instead of prompting for them.
+*
+* The file is streamed in chunks of CHUNK_SIZE lines. Each chunk is validated
+* by a pool of worker threads, one per core, and every valid password's time
+* is looked up the same way -check does (the direct table, the binary index or
+* the symbol table). A worker turns its chunk into one block of output lines,
+*   password,time    for a valid password, time in ms as in all_passwords.txt
+*   password,invalid otherwise
+* and the blocks are written to check_results.txt in input order. At most a
+* few chunks per worker are in flight, so memory stays flat however long the
+* file is.
+*
+* When the file is done, the throughput and the percentiles of the time taken
+* to check a single password are printed.
+*
+* @author Craig Mazzotta
+*/
+public class BatchCheck {
+  public static final File RESULTS = new File("check_results.txt"); //where the results are written
+  private static final int CHUNK_SIZE = 4096; //passwords handed to a worker at a time
+
+  /**
+  * Checks every password in a file, writing the results to check_results.txt.
+  * createDictionary() and the password lookup must already be set up.
+  *
+  * @param input The file of passwords, one per line
+  * @throws IOException If the input can't be read or the results can't be written
+  */
+  public static void checkPasswords(File input) throws IOException {
+    int workers = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(workers);
+    ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<Future<Chunk>>(); //chunks being checked, in input order
+    Histogram latency = new Histogram();
+    long checked = 0, valid = 0;
+    long start = System.nanoTime();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(input), "UTF-8"));
+         Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(RESULTS), "UTF-8"), 1 << 20)) {
+      List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+      String line;
+      while(true){
+        line = in.readLine();
+        if(line != null){
+          lines.add(line);
+          if(lines.size() < CHUNK_SIZE){
+            continue;
+          }
+        }
+        if(!lines.isEmpty()){
+          List<String> passwords = lines;
+          inFlight.add(pool.submit(() -> check(passwords)));
+          lines = new ArrayList<String>(CHUNK_SIZE);
+        }
+        while(!inFlight.isEmpty() && (line == null || inFlight.size() > 2*workers)){ //write the oldest chunks out
+          Chunk chunk = result(inFlight.poll());
+          out.append(chunk.output);
+          latency.add(chunk.latency);
+          checked += chunk.checked;
+          valid += chunk.valid;
+        }
+        if(line == null){ //end of the file
+          break;
+        }
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println("Checked " + checked + " passwords (" + valid + " valid) in " + seconds + " s, "
+      + Math.round(checked / seconds) + " passwords/s, results in " + RESULTS);
+    if(checked > 0){
+      System.out.printf("Time per password: p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us%n",
+        latency.percentile(0.50) / 1000.0, latency.percentile(0.90) / 1000.0,
+        latency.percentile(0.99) / 1000.0, latency.max() / 1000.0);
+    }
+  }
+
+  private static Chunk result(Future<Chunk> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while checking passwords");
+    }
+    catch (ExecutionException e) {
+      throw new IOException("Checking passwords failed", e.getCause());
+    }
+  }
+
+  /**
+  * Checks one chunk of passwords on a worker thread.
+  *
+  * @param lines The passwords, as read from the file
+  * @return The output lines and timings of the chunk
+  */
+  private static Chunk check(List<String> lines) {
+    Chunk chunk = new Chunk();
+    StringBuilder userPass = new StringBuilder();
+    for(String line : lines){
+      long begin = System.nanoTime();
+      String input = line.toLowerCase();
+      userPass.replace(0, userPass.length(), input);
+      chunk.output.append(line).append(',');
+      if(pw_check.validatePassword(userPass)){
+        chunk.output.append(lookup(input));
+        chunk.valid++;
+      } else {
+        chunk.output.append("invalid");
+      }
+      chunk.output.append('\n');
+      chunk.latency.add(System.nanoTime() - begin);
+      chunk.checked++;
+    }
+    return chunk;
+  }
+
+  /**
+  * @param password A valid password
+  * @return The time it took -find to reach the password, in ms, printed as -check prints it
+  */
+  private static String lookup(String password) {
+    if(pw_check.directTable != null){
+      return String.valueOf(pw_check.directTable.get(password));
+    } else if(pw_check.passwordIndex != null){
+      return String.valueOf(pw_check.passwordIndex.get(password));
+    } else if(pw_check.passwordStore != null){
+      return String.valueOf(pw_check.passwordStore.get(password));
+    } else {
+      return String.valueOf(pw_check.validPasswords.get(password));
+    }
+  }
+
+  /**
+  * Results of one chunk of passwords.
+  */
+  private static class Chunk {
+    final StringBuilder output = new StringBuilder(); //password,time or password,invalid lines
+    final Histogram latency = new Histogram(); //time to check each password
+    long checked; //passwords in the chunk
+    long valid; //valid passwords in the chunk
+  }
+
+  /**
+  * Counts of nanosecond timings in buckets a sixteenth of a power of two
+  * wide, so a percentile is read to within about 6% without keeping every
+  * timing. Timings below 16 ns get a bucket each.
+  */
+  static class Histogram {
+    private static final int SUB_BUCKETS = 16; //buckets per power of two
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total; //timings counted
+    private long max; //longest timing
+
+    /**
+    * @param nanos A timing, in ns
+    */
+    void add(long nanos) {
+      nanos = Math.max(0, nanos);
+      counts[bucket(nanos)]++;
+      total++;
+      max = Math.max(max, nanos);
+    }
+
+    /**
+    * @param other Timings to add to these
+    */
+    void add(Histogram other) {
+      for(int b = 0; b < counts.length; b++){
+        counts[b] += other.counts[b];
+      }
+      total += other.total;
+      max = Math.max(max, other.max);
+    }
+
+    /**
+    * @param p The fraction of timings at or below the answer, e.g. 0.99
+    * @return The smallest value of the bucket holding that timing, in ns
+    */
+    long percentile(double p) {
+      long rank = (long) Math.ceil(p * total);
+      long seen = 0;
+      for(int b = 0; b < counts.length; b++){
+        seen += counts[b];
+        if(seen >= rank && counts[b] > 0){
+          return Math.min(lowest(b), max);
+        }
+      }
+      return max;
+    }
+
+    /**
+    * @return The longest timing, in ns
+    */
+    long max() {
+      return max;
+    }
+
+    private static int bucket(long nanos) {
+      if(nanos < SUB_BUCKETS){
+        return (int) nanos;
+      }
+      int exp = 63 - Long.numberOfLeadingZeros(nanos); //at least 4
+      int sub = (int) (nanos >>> (exp - 4)) & (SUB_BUCKETS - 1);
+      return (exp - 3) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowest(int bucket) {
+      if(bucket < SUB_BUCKETS){
+        return bucket;
+      }
+      int exp = bucket / SUB_BUCKETS + 3;
+      long sub = bucket % SUB_BUCKETS;
+      return (SUB_BUCKETS + sub) << (exp - 4);
+    }
+  }
+}
@@ -0,0 +1,363 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import dataStructures.*;
+
+/**
+* Micro-benchmarks for the pieces of the pw_check pipeline.
+*
+* Run from the project directory (dictionary.txt is needed) with
+*   java Benchmark [-full] [name ...]
+* where each name selects the benchmarks whose name starts with it, e.g.
+* "java Benchmark DLB" runs DLB.search and DLB.add. "-full" adds a run that
+* validates every one of the 42^5 candidates, which takes several seconds.
+*
+* Every benchmark is warmed up first so the JIT has compiled the hot path,
+* then timed over several iterations. For each one it reports the mean time
+* per operation, operations per second, bytes allocated per operation
+* (measured on the benchmarking thread) and the garbage collections that ran
+* while it was timed, so extra allocation on the hot path shows up as a number.
+*
+* @author Craig Mazzotta
+*/
+public class Benchmark {
+  private static final int WARMUP = 5; //untimed iterations
+  private static final int ITERATIONS = 5; //timed iterations
+  private static final int SAMPLES = 1 << 16; //inputs per iteration
+  private static final com.sun.management.ThreadMXBean threads = allocationBean(); //null if the JVM can't count allocations
+
+  private static long sink; //results are folded in here so the JIT can't drop the work
+
+  /**
+  * One benchmarked operation.
+  */
+  private interface Op {
+    /**
+    * @param i The number of the operation, from 0 to the number per iteration
+    * @return Any value depending on the work done
+    */
+    long run(int i);
+  }
+
+  public static void main(String[] args) {
+    pw_check.createDictionary();
+    Random random = new Random(1501);
+    StringBuilder[] candidates = new StringBuilder[SAMPLES]; //random 5 character strings over the alphabet
+    String[] passwords = new String[SAMPLES];
+    for(int i = 0; i < SAMPLES; i++){
+      char[] c = new char[5];
+      for(int d = 0; d < c.length; d++){
+        c[d] = pw_check.characters.toChar(random.nextInt(pw_check.characters.radix()));
+      }
+      passwords[i] = new String(c);
+      candidates[i] = new StringBuilder(passwords[i]);
+    }
+    String[] words = readWords();
+    StringBuilder[] keys = new StringBuilder[SAMPLES]; //dictionary words and prefixes of them
+    for(int i = 0; i < SAMPLES; i++){
+      String word = words[random.nextInt(words.length)];
+      keys[i] = new StringBuilder(word.substring(0, 1 + random.nextInt(word.length())));
+    }
+
+    PasswordValidator automaton = new PasswordValidator(pw_check.policy, pw_check.dictionary, pw_check.wordMatcher);
+    if(selected(args, "validatePassword")){
+      measure("validatePassword", SAMPLES, i -> pw_check.validatePassword(candidates[i]) ? 1 : 0);
+    }
+    if(selected(args, "validatePassword -nofilter")){ //the DLB lookups without the Bloom filter in front
+      PasswordValidator unfiltered = new PasswordValidator(pw_check.policy, pw_check.dictionary);
+      measure("validatePassword -nofilter", SAMPLES, i -> unfiltered.validate(candidates[i]) ? 1 : 0);
+    }
+    if(selected(args, "validatePassword -filter")){ //the Bloom filter in front of the DLB, no cache; pw_check only builds it when the cache can't cover a password
+      BloomFilter filter = new BloomFilter(pw_check.dictionary.keys(pw_check.policy.length()).size(), 32);
+      for(String word : pw_check.dictionary.keys(pw_check.policy.length())){
+        filter.add(word);
+      }
+      PasswordValidator filtered = new PasswordValidator(pw_check.policy, pw_check.dictionary, filter, null, null);
+      measure("validatePassword -filter", SAMPLES, i -> filtered.validate(candidates[i]) ? 1 : 0);
+    }
+    if(selected(args, "validatePassword -nofilter -cache")){ //every DLB lookup goes through the cache
+      PasswordValidator cached = new PasswordValidator(pw_check.policy, pw_check.dictionary, null,
+        new SearchCache(16), null);
+      measure("validatePassword -nofilter -cache", SAMPLES, i -> cached.validate(candidates[i]) ? 1 : 0);
+    }
+    if(selected(args, "validatePassword -automaton")){
+      measure("validatePassword -automaton", SAMPLES, i -> automaton.validate(candidates[i]) ? 1 : 0);
+    }
+    if(selected(args, "hasWord")){ //the validator's word scan alone: readings, cache, filter (if built) and DLB as -find uses them
+      PasswordValidator scanner = new PasswordValidator(pw_check.policy, pw_check.dictionary, pw_check.wordFilter,
+        pw_check.searchCache, null);
+      measure("hasWord", SAMPLES, i -> scanner.containsWord(candidates[i]) ? 1 : 0);
+    }
+
+    DLB dlb = new DLB();
+    for(String word : words){
+      dlb.add(word);
+    }
+    if(selected(args, "DLB.search")){
+      measure("DLB.search", SAMPLES, i -> dlb.search(keys[i]));
+    }
+    if(selected(args, "DLB.add")){
+      DLB[] fresh = new DLB[1];
+      measure("DLB.add", words.length, i -> {
+        if(i == 0){
+          fresh[0] = new DLB();
+        }
+        return fresh[0].add(words[i]) ? 1 : 0;
+      });
+    }
+
+    RWay<Double> rway = new RWay<Double>();
+    for(int i = 0; i < SAMPLES; i++){
+      rway.put(passwords[i], (double) i);
+    }
+    if(selected(args, "RWay.put")){
+      AtomicReference<RWay<Double>> fresh = new AtomicReference<RWay<Double>>();
+      measure("RWay.put", SAMPLES, i -> {
+        if(i == 0){
+          fresh.set(new RWay<Double>());
+        }
+        fresh.get().put(passwords[i], (double) i);
+        return i;
+      });
+    }
+    if(selected(args, "RWay.get")){
+      measure("RWay.get", SAMPLES, i -> rway.get(passwords[i]).longValue());
+    }
+    if(selected(args, "RWay.keysWithPrefix")){
+      measure("RWay.keysWithPrefix", SAMPLES, i -> rway.keysWithPrefix(passwords[i].substring(0, 2)).size());
+    }
+    if(selected(args, "RWay.forEachWithPrefix")){ //the same keys streamed to a visitor, no queue
+      measure("RWay.forEachWithPrefix", SAMPLES, i -> rway.forEachWithPrefix(passwords[i].substring(0, 2), (key, time) -> true));
+    }
+
+    if(selected(args, "ConcurrentRWay.put")){
+      measureConcurrentPut(passwords, 4);
+    }
+    if(selected(args, "ConcurrentRWay.get")){
+      ConcurrentRWay<Double> shared = new ConcurrentRWay<Double>();
+      for(int i = 0; i < SAMPLES; i++){
+        shared.put(passwords[i], (double) i);
+      }
+      measure("ConcurrentRWay.get", SAMPLES, i -> shared.get(passwords[i]).longValue());
+    }
+
+    if(hasFlag(args, "-full") && selected(args, "keyspace")){
+      measureKeyspace();
+    }
+    if(sink == 42){ //never true in practice; keeps sink live
+      System.out.println();
+    }
+  }
+
+  /**
+  * Validates every 5 character string over the alphabet once, in the order
+  * pw_check.genPasswords() does, and reports the candidates per second.
+  */
+  private static void measureKeyspace() {
+    int R = pw_check.characters.radix();
+    int total = R * R * R * R * R;
+    StringBuilder attempt = new StringBuilder("aaaaa");
+    int[] digits = new int[5];
+    Allocation before = new Allocation();
+    long start = System.nanoTime();
+    int valid = 0;
+    for(int code = 0; code < total; code++){
+      if(pw_check.validatePassword(attempt)){
+        valid++;
+      }
+      for(int d = 4; d >= 0; d--){ //next candidate, last character fastest
+        digits[d] = (digits[d] + 1) % R;
+        attempt.setCharAt(d, pw_check.characters.toChar(digits[d]));
+        if(digits[d] != 0){
+          break;
+        }
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    Allocation after = new Allocation();
+    System.out.printf("%-28s %d candidates, %d valid, %.1f s, %.0f candidates/s%s%n", "keyspace", total, valid,
+      elapsed / 1e9, total / (elapsed / 1e9), after.since(before, total));
+  }
+
+  /**
+  * Has several threads put the same keys into one ConcurrentRWay at once,
+  * each in its own order, with half the puts being putIfAbsent, and checks
+  * afterwards that the table holds each distinct key exactly once. The full
+  * stress check, with deletes and scans during the puts, is ConcurrentRWayCheck.
+  *
+  * @param keys The keys to put
+  * @param workers The number of threads putting
+  */
+  private static void measureConcurrentPut(String[] keys, int workers) {
+    int distinct = new java.util.HashSet<String>(java.util.Arrays.asList(keys)).size();
+    long elapsed = 0;
+    for(int it = 0; it < WARMUP + ITERATIONS; it++){
+      ConcurrentRWay<Integer> shared = new ConcurrentRWay<Integer>();
+      Thread[] threads = new Thread[workers];
+      for(int w = 0; w < workers; w++){
+        final int offset = w * (keys.length / workers);
+        final boolean ifAbsent = w % 2 == 1;
+        threads[w] = new Thread(() -> {
+          for(int i = 0; i < keys.length; i++){
+            int k = (offset + i) % keys.length; //each thread starts at a different key
+            if(ifAbsent){
+              shared.putIfAbsent(keys[k], k);
+            } else {
+              shared.put(keys[k], k);
+            }
+          }
+        });
+      }
+      long start = System.nanoTime();
+      for(Thread thread : threads){
+        thread.start();
+      }
+      for(Thread thread : threads){
+        try {
+          thread.join();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      if(it >= WARMUP){
+        elapsed += System.nanoTime() - start;
+      }
+      if(shared.size() != distinct || shared.keys().size() != distinct){
+        throw new IllegalStateException("ConcurrentRWay holds " + shared.size() + " keys, expected " + distinct);
+      }
+      for(String key : keys){
+        if(!shared.contains(key)){
+          throw new IllegalStateException("ConcurrentRWay lost " + key);
+        }
+      }
+    }
+    long total = (long) keys.length * workers * ITERATIONS;
+    System.out.printf("%-28s %10.1f ns/op %14.0f ops/s (%d threads, %d distinct keys)%n", "ConcurrentRWay.put",
+      (double) elapsed / total, total / (elapsed / 1e9), workers, distinct);
+  }
+
+  /**
+  * Warms up and times one benchmark, then prints its results.
+  *
+  * @param name The name to print
+  * @param ops The number of operations per iteration
+  * @param op The operation
+  */
+  private static void measure(String name, int ops, Op op) {
+    for(int w = 0; w < WARMUP; w++){
+      sink += iteration(ops, op);
+    }
+    Allocation before = new Allocation();
+    long start = System.nanoTime();
+    for(int it = 0; it < ITERATIONS; it++){
+      sink += iteration(ops, op);
+    }
+    long elapsed = System.nanoTime() - start;
+    Allocation after = new Allocation();
+    long total = (long) ops * ITERATIONS;
+    System.out.printf("%-28s %10.1f ns/op %14.0f ops/s%s%n", name, (double) elapsed / total,
+      total / (elapsed / 1e9), after.since(before, total));
+  }
+
+  private static long iteration(int ops, Op op) {
+    long result = 0;
+    for(int i = 0; i < ops; i++){
+      result += op.run(i);
+    }
+    return result;
+  }
+
+  /**
+  * Bytes allocated by this thread and collections run so far, sampled at a point in time.
+  */
+  private static class Allocation {
+    final long bytes = threads == null ? -1 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    final long collections;
+    final long collectionMillis;
+
+    Allocation() {
+      long count = 0, millis = 0;
+      for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+        count += Math.max(0, gc.getCollectionCount());
+        millis += Math.max(0, gc.getCollectionTime());
+      }
+      collections = count;
+      collectionMillis = millis;
+    }
+
+    /**
+    * @param before The earlier sample
+    * @param ops The operations run between the samples
+    * @return The allocation and GC columns of a result line
+    */
+    String since(Allocation before, long ops) {
+      String perOp = bytes < 0 ? "n/a" : String.format("%.1f", (double) (bytes - before.bytes) / ops);
+      return String.format(" %10s B/op %5d gc (%d ms)", perOp, collections - before.collections,
+        collectionMillis - before.collectionMillis);
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if(!(bean instanceof com.sun.management.ThreadMXBean)){
+      return null;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    if(!threads.isThreadAllocatedMemorySupported()){
+      return null;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+    return threads;
+  }
+
+  /**
+  * @param args Command-line arguments
+  * @param name The name of a benchmark
+  * @return True if no names were passed or one of them starts the benchmark's name
+  */
+  private static boolean selected(String[] args, String name) {
+    boolean any = false;
+    for(String arg : args){
+      if(arg.startsWith("-")){
+        continue;
+      }
+      any = true;
+      if(name.startsWith(arg)){
+        return true;
+      }
+    }
+    return !any;
+  }
+
+  private static boolean hasFlag(String[] args, String flag) {
+    for(String arg : args){
+      if(arg.equals(flag)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+  * @return The lowercased words of dictionary.txt
+  */
+  private static String[] readWords() {
+    java.util.ArrayList<String> words = new java.util.ArrayList<String>();
+    try (java.util.Scanner infile = new java.util.Scanner(new java.io.File("dictionary.txt"))) {
+      while (infile.hasNextLine()) {
+        String word = infile.nextLine().toLowerCase();
+        if(!word.isEmpty()){
+          words.add(word);
+        }
+      }
+    }
+    catch (java.io.FileNotFoundException e) {
+      System.out.println("dictionary.txt not found");
+      System.exit(1);
+    }
+    return words.toArray(new String[0]);
+  }
+}
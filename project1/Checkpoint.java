@@ -0,0 +1,125 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+* Records how far a sharded -find has got, so an interrupted run can pick up
+* where it stopped instead of starting over.
+*
+* The checkpoint file holds the next shard to search, the number of bytes of
+* the output that belong to finished shards, and the time spent so far. It is
+* only saved once everything before that point has been flushed to the output,
+* and it is replaced atomically (written to a temporary file, then renamed),
+* so a crash leaves either the old checkpoint or the new one, never half of one.
+*
+* The policy the run was started with is saved too; a checkpoint written
+* under another policy is ignored.
+*
+* @author Craig Mazzotta
+*/
+public class Checkpoint {
+  private final File file; //where the checkpoint is kept
+  private final String policy; //policy of the run, see PasswordPolicy.toString()
+  private int shard; //first shard not finished
+  private long offset; //bytes of output written by the finished shards
+  private double elapsed; //milliseconds spent on the finished shards
+
+  private Checkpoint(File file, String policy, int shard, long offset, double elapsed) {
+    this.file = file;
+    this.policy = policy;
+    this.shard = shard;
+    this.offset = offset;
+    this.elapsed = elapsed;
+  }
+
+  /**
+  * Reads the checkpoint left by an earlier run.
+  *
+  * @param file The checkpoint file
+  * @param policy The policy of this run
+  * @return The saved checkpoint, or one at the start of the run if the file is
+  *     missing, unreadable, or was saved under another policy
+  */
+  public static Checkpoint load(File file, String policy) {
+    Checkpoint start = new Checkpoint(file, policy, 0, 0, 0);
+    if(!file.exists()){
+      return start;
+    }
+    Properties saved = new Properties();
+    try (Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+      saved.load(in);
+      if(!policy.equals(saved.getProperty("policy"))){
+        System.out.println(file + " was saved under another policy, starting over");
+        return start;
+      }
+      return new Checkpoint(file, policy, Integer.parseInt(saved.getProperty("shard")),
+        Long.parseLong(saved.getProperty("offset")), Double.parseDouble(saved.getProperty("elapsed")));
+    }
+    catch (IOException | RuntimeException e) { //unreadable, or a property is missing or garbled
+      System.out.println("Unable to read " + file + ", starting over");
+      return start;
+    }
+  }
+
+  /**
+  * @return A checkpoint at the start of the run, kept in the same file
+  */
+  public Checkpoint restart() {
+    return new Checkpoint(file, policy, 0, 0, 0);
+  }
+
+  /**
+  * @return The first shard that isn't finished
+  */
+  public int shard() {
+    return shard;
+  }
+
+  /**
+  * @return The bytes of output written by the finished shards
+  */
+  public long offset() {
+    return offset;
+  }
+
+  /**
+  * @return The milliseconds spent on the finished shards
+  */
+  public double elapsed() {
+    return elapsed;
+  }
+
+  /**
+  * Records that every shard before the given one is finished. The output
+  * up to offset must already be flushed.
+  *
+  * @param shard The first shard that isn't finished
+  * @param offset The bytes of output written by the finished shards
+  * @param elapsed The milliseconds spent on the finished shards
+  * @throws IOException If the checkpoint can't be written
+  */
+  public void save(int shard, long offset, double elapsed) throws IOException {
+    Properties saved = new Properties();
+    saved.setProperty("policy", policy);
+    saved.setProperty("shard", Integer.toString(shard));
+    saved.setProperty("offset", Long.toString(offset));
+    saved.setProperty("elapsed", Double.toString(elapsed));
+    File temp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(temp)) {
+      saved.store(new OutputStreamWriter(out, "UTF-8"), "pw_check -find -resume");
+      out.getFD().sync();
+    }
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    this.shard = shard;
+    this.offset = offset;
+    this.elapsed = elapsed;
+  }
+
+  /**
+  * Removes the checkpoint file once the run is complete.
+  */
+  public void delete() {
+    file.delete();
+  }
+}
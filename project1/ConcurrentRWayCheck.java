@@ -0,0 +1,222 @@
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import dataStructures.*;
+
+/**
+* Stress check for ConcurrentRWay: several threads work on one table at once
+* and the promises in its class comment are checked afterwards.
+*
+* Run with
+*   java ConcurrentRWayCheck [threads] [rounds]
+* It prints a summary line, or the first failure and exits with status 1;
+* an exception on any thread is a failure too.
+* The checks are
+*   put       every thread puts the same keys in its own order, half of them
+*             with putIfAbsent; each key must then be in the table once
+*   delete    threads put and delete the same keys at random; afterwards
+*             size() must equal the number of keys actually present, and
+*             deleting everything must bring it back to 0
+*   scan      keysWithPrefix runs while other threads put; every scan must be
+*             sorted, without repeats, hold only keys that were put, and hold
+*             every key whose put finished before the scan began
+*
+* @author Craig Mazzotta
+*/
+public class ConcurrentRWayCheck {
+  private static final int KEYS = 1 << 15; //distinct keys per round
+  private static final String PREFIX = "a"; //prefix scanned while putting
+
+  public static void main(String[] args) throws InterruptedException {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    Random random = new Random(1501);
+    for(int round = 0; round < rounds; round++){
+      String[] keys = randomKeys(random);
+      checkPut(keys, threads);
+      checkDelete(keys, threads, random.nextLong());
+      checkScan(keys, threads);
+    }
+    System.out.println("ConcurrentRWay passed " + rounds + " rounds with " + threads + " threads");
+  }
+
+  /**
+  * @param random The source of the keys
+  * @return KEYS distinct keys of 1 to 5 alphabet characters, a third of them starting with PREFIX
+  */
+  private static String[] randomKeys(Random random) {
+    Alphabet characters = RWay.validChars;
+    Set<String> keys = new HashSet<String>();
+    while(keys.size() < KEYS){
+      StringBuilder key = new StringBuilder(random.nextInt(3) == 0 ? PREFIX : "");
+      int length = 1 + random.nextInt(5);
+      while(key.length() < length){
+        key.append(characters.toChar(random.nextInt(characters.radix())));
+      }
+      keys.add(key.toString());
+    }
+    return keys.toArray(new String[0]);
+  }
+
+  /**
+  * Every thread puts every key, starting at a different one, odd threads with putIfAbsent.
+  */
+  private static void checkPut(String[] keys, int threads) throws InterruptedException {
+    ConcurrentRWay<Integer> table = new ConcurrentRWay<Integer>();
+    run(threads, w -> {
+      for(int i = 0; i < keys.length; i++){
+        int k = (w * (keys.length / threads) + i) % keys.length;
+        if(w % 2 == 1){
+          table.putIfAbsent(keys[k], k);
+        } else {
+          table.put(keys[k], k);
+        }
+      }
+    });
+    check(table.size() == keys.length, "put: size " + table.size() + ", expected " + keys.length);
+    check(table.keys().size() == keys.length, "put: keys() found " + table.keys().size() + ", expected " + keys.length);
+    for(int k = 0; k < keys.length; k++){
+      check(table.get(keys[k]) != null && table.get(keys[k]) == k, "put: wrong value for " + keys[k]);
+    }
+  }
+
+  /**
+  * Threads put and delete a small set of shared keys at random, so the same
+  * key keeps going between absent and present on several threads at once.
+  */
+  private static void checkDelete(String[] keys, int threads, long seed) throws InterruptedException {
+    ConcurrentRWay<Integer> table = new ConcurrentRWay<Integer>();
+    int shared = 64; //few keys, so threads collide on them constantly
+    run(threads, w -> {
+      Random random = new Random(seed + w);
+      for(int i = 0; i < 200000; i++){
+        int k = random.nextInt(shared);
+        if(random.nextBoolean()){
+          table.put(keys[k], k);
+        } else {
+          table.delete(keys[k]);
+        }
+      }
+    });
+    int present = 0;
+    for(int k = 0; k < shared; k++){
+      if(table.contains(keys[k])){
+        present++;
+      }
+    }
+    check(table.size() == present, "delete: size " + table.size() + " but " + present + " keys present");
+    check(table.keys().size() == present, "delete: keys() found " + table.keys().size() + ", " + present + " present");
+    run(threads, w -> {
+      for(int k = 0; k < shared; k++){
+        table.delete(keys[k]);
+      }
+    });
+    check(table.size() == 0 && table.isEmpty(), "delete: size " + table.size() + " after deleting every key");
+  }
+
+  /**
+  * Writers put the keys in order, each publishing how many of its share are
+  * done, while the main thread scans PREFIX over and over.
+  */
+  private static void checkScan(String[] keys, int threads) throws InterruptedException {
+    ConcurrentRWay<Integer> table = new ConcurrentRWay<Integer>();
+    int writers = Math.max(1, threads - 1);
+    AtomicInteger[] done = new AtomicInteger[writers]; //keys w, w+writers, ... below done[w]*writers+w are in
+    for(int w = 0; w < writers; w++){
+      done[w] = new AtomicInteger();
+    }
+    Set<String> all = new HashSet<String>();
+    for(String key : keys){
+      all.add(key);
+    }
+    Thread[] running = start(writers, w -> {
+      for(int i = w; i < keys.length; i += writers){
+        table.put(keys[i], i);
+        done[w].incrementAndGet();
+      }
+    });
+    int scans = 0;
+    boolean finished = false;
+    while(!finished){
+      finished = true;
+      for(Thread thread : running){
+        finished &= !thread.isAlive();
+      }
+      int[] before = new int[writers];
+      for(int w = 0; w < writers; w++){
+        before[w] = done[w].get();
+      }
+      Set<String> seen = new HashSet<String>();
+      String last = null;
+      for(String key : table.keysWithPrefix(PREFIX)){
+        check(key.startsWith(PREFIX), "scan: " + key + " doesn't start with " + PREFIX);
+        check(all.contains(key), "scan: " + key + " was never put");
+        check(seen.add(key), "scan: " + key + " returned twice");
+        check(last == null || compare(last, key) < 0, "scan: " + last + " returned before " + key);
+        last = key;
+      }
+      for(int w = 0; w < writers; w++){
+        for(int j = 0; j < before[w]; j++){
+          String key = keys[w + j * writers];
+          check(!key.startsWith(PREFIX) || seen.contains(key), "scan: missed " + key + ", put before the scan began");
+        }
+      }
+      scans++;
+    }
+    join(running);
+    check(table.size() == keys.length, "scan: size " + table.size() + ", expected " + keys.length);
+    if(scans < 2){
+      System.out.println("scan: the puts finished after " + scans + " scan(s), try more keys or threads");
+    }
+  }
+
+  // compares keys in the trie's order, by alphabet index then length
+  private static int compare(String a, String b) {
+    for(int i = 0; i < Math.min(a.length(), b.length()); i++){
+      int c = RWay.validChars.toIndex(a.charAt(i)) - RWay.validChars.toIndex(b.charAt(i));
+      if(c != 0){
+        return c;
+      }
+    }
+    return a.length() - b.length();
+  }
+
+  /**
+  * Work done by one of the threads of a check.
+  */
+  private interface Worker {
+    /**
+    * @param w The number of the thread
+    */
+    void run(int w);
+  }
+
+  private static void run(int threads, Worker worker) throws InterruptedException {
+    join(start(threads, worker));
+  }
+
+  private static Thread[] start(int threads, Worker worker) {
+    Thread[] running = new Thread[threads];
+    for(int w = 0; w < threads; w++){
+      final int id = w;
+      running[w] = new Thread(() -> worker.run(id));
+      running[w].setUncaughtExceptionHandler((thread, e) -> check(false, thread.getName() + " threw " + e));
+      running[w].start();
+    }
+    return running;
+  }
+
+  private static void join(Thread[] running) throws InterruptedException {
+    for(Thread thread : running){
+      thread.join();
+    }
+  }
+
+  private static void check(boolean ok, String failure) {
+    if(!ok){
+      System.out.println("FAILED " + failure);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,338 @@
+import java.io.*;
+import dataStructures.*;
+
+/**
+* Version of pw_check.genPasswords() that generates passwords most likely
+* first, according to a character-level Markov model, so the time recorded
+* for a password reflects how soon a cracker trained on real passwords would
+* guess it rather than its alphabetical position.
+*
+* The model is trained from a corpus with one password (or word) per line.
+* It counts how often each character follows each other character, or starts
+* a line, with add-one smoothing so every transition has some probability.
+* The cost of a password is its negative log probability, the sum of the
+* costs of its transitions.
+*
+* Prefixes wait in a frontier ordered by their cost plus the least cost of
+* any completion (computed for every last character and number of positions
+* left), so the cheapest prefix is always expanded next and passwords come
+* out in descending probability. Prefixes that can't lead to a valid
+* password are cut the way OdometerSearch cuts them. The frontier holds at
+* most MAX_FRONTIER prefixes. A prefix that would overflow it has its
+* passwords generated depth-first on the spot instead, cheapest transition
+* first, so memory stays bounded and every valid password is still found,
+* only in a less exact order.
+*
+* @author Craig Mazzotta
+*/
+public class MarkovSearch {
+  public static final int MAX_FRONTIER = 1 << 20; //most prefixes waiting to be expanded
+  private final PasswordPolicy policy; //what a valid password looks like
+  private final Alphabet characters; //valid characters for a password
+  private final AhoCorasick matcher; //dictionary words with their substituted spellings
+  private final int length; //length of a password
+  private final int R; //number of valid characters
+  private final double[][] cost; //cost of each character after each character; row R is the start of a password
+  private final int[][] order; //characters after each character, cheapest first
+  private final double[][] rest; //least cost of completing a prefix ending in a character with k positions left
+  private final Frontier frontier = new Frontier(MAX_FRONTIER);
+  private final int[] digit; //alphabet indices of the prefix being expanded
+  private final int[][] counts; //characters of each class in the first d characters
+  private final int[] state; //matcher state after the first d characters
+  private final char[] password; //the password being emitted
+  private long startTime; //start of the search
+  private long emitted; //valid passwords generated
+  private long overflowed; //prefixes generated depth-first because the frontier was full
+  private int peak; //most prefixes the frontier held
+
+  /**
+  * Trains the model.
+  *
+  * @param policy The policy passwords must satisfy
+  * @param matcher Automaton of the dictionary words and their substituted spellings
+  * @param corpus Passwords or words to learn transitions from, one per line
+  * @throws IOException If the corpus can't be read
+  * @throws IllegalArgumentException If a password's indices don't fit in a long
+  */
+  public MarkovSearch(PasswordPolicy policy, AhoCorasick matcher, File corpus) throws IOException {
+    this.policy = policy;
+    this.characters = policy.alphabet();
+    this.matcher = matcher;
+    this.length = policy.length();
+    this.R = characters.radix();
+    if(length * Math.log(R) >= 63 * Math.log(2)){
+      throw new IllegalArgumentException("Prefixes of " + length + " characters don't fit in a long");
+    }
+    digit = new int[length];
+    counts = new int[length+1][policy.classes()];
+    state = new int[length+1];
+    password = new char[length];
+
+    long[][] seen = new long[R+1][R]; //transitions counted in the corpus
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(corpus), "UTF-8"))) {
+      String line;
+      while((line = in.readLine()) != null){
+        int prev = R;
+        for(int i = 0; i < line.length(); i++){
+          int c = characters.indexOf(Character.toLowerCase(line.charAt(i)));
+          if(c == -1){ //a character outside the alphabet starts a new chain
+            prev = R;
+            continue;
+          }
+          seen[prev][c]++;
+          prev = c;
+        }
+      }
+    }
+    cost = new double[R+1][R];
+    order = new int[R+1][];
+    for(int p = 0; p <= R; p++){
+      long total = R; //add-one smoothing
+      for(int c = 0; c < R; c++){
+        total += seen[p][c];
+      }
+      Integer[] byCost = new Integer[R];
+      for(int c = 0; c < R; c++){
+        cost[p][c] = -Math.log((seen[p][c] + 1.0) / total);
+        byCost[c] = c;
+      }
+      final double[] row = cost[p];
+      java.util.Arrays.sort(byCost, (a, b) -> Double.compare(row[a], row[b]));
+      order[p] = new int[R];
+      for(int c = 0; c < R; c++){
+        order[p][c] = byCost[c];
+      }
+    }
+    rest = new double[length+1][R+1];
+    for(int k = 1; k <= length; k++){
+      for(int p = 0; p <= R; p++){
+        double best = Double.POSITIVE_INFINITY;
+        for(int c = 0; c < R; c++){
+          best = Math.min(best, cost[p][c] + rest[k-1][c]);
+        }
+        rest[k][p] = best;
+      }
+    }
+  }
+
+  /**
+  * Generates all valid passwords, most likely first, storing them with
+  * pw_check.storePass(), then reports the rate.
+  *
+  * @param corpus Passwords or words to train the model on
+  */
+  public static void genPasswords(File corpus) {
+    MarkovSearch search;
+    try {
+      search = new MarkovSearch(pw_check.policy, pw_check.wordMatcher, corpus);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to read " + corpus + ": " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    catch (IllegalArgumentException e) {
+      System.out.println("Unable to search by probability: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    long start = System.nanoTime();
+    search.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println("Markov: " + search.emitted + " passwords in " + seconds + " s, "
+      + Math.round(search.emitted / seconds) + " candidates/s; frontier peaked at " + search.peak + " of "
+      + MAX_FRONTIER + ", " + search.overflowed + " prefixes generated depth-first");
+  }
+
+  /**
+  * Runs the search from the empty prefix.
+  */
+  public void run() {
+    startTime = System.nanoTime();
+    emitted = 0;
+    overflowed = 0;
+    state[0] = matcher.start();
+    frontier.push(rest[length][R], 0, 0, 0);
+    while(!frontier.isEmpty()){
+      peak = Math.max(peak, frontier.size());
+      double g = frontier.minCost(); //cost of the prefix itself
+      long code = frontier.minCode();
+      int depth = frontier.minDepth();
+      frontier.pop();
+      restore(code, depth);
+      if(depth == length){
+        emit();
+      } else if(frontier.size() + R <= frontier.capacity()){
+        int last = depth == 0 ? R : digit[depth-1];
+        for(int c = 0; c < R; c++){
+          digit[depth] = c;
+          if(place(depth)){
+            double next = g + cost[last][c];
+            frontier.push(next + rest[length-depth-1][c], next, code * R + c, depth+1);
+          }
+        }
+      } else { //no room for the children, generate the prefix's passwords now
+        overflowed++;
+        descend(depth);
+      }
+    }
+  }
+
+  /**
+  * Sets digit, counts and state for a prefix taken from the frontier.
+  *
+  * @param code The prefix's alphabet indices as a base R number
+  * @param depth The length of the prefix
+  */
+  private void restore(long code, int depth) {
+    for(int d = depth-1; d >= 0; d--){
+      digit[d] = (int) (code % R);
+      code /= R;
+    }
+    for(int d = 0; d < depth; d++){
+      place(d);
+    }
+  }
+
+  /**
+  * Generates every valid password starting with the first pos characters,
+  * cheapest transition first.
+  *
+  * @param pos The position to fill in
+  */
+  private void descend(int pos) {
+    if(pos == length){
+      emit();
+      return;
+    }
+    int[] next = order[pos == 0 ? R : digit[pos-1]];
+    for(int i = 0; i < R; i++){
+      digit[pos] = next[i];
+      if(place(pos)){
+        descend(pos+1);
+      }
+    }
+  }
+
+  /**
+  * Places the character of digit[pos], deriving the counts and matcher state
+  * after it from those before it.
+  *
+  * @param pos The position to fill in
+  * @return True if some password can still start with the first pos+1 characters
+  */
+  private boolean place(int pos) {
+    int index = digit[pos];
+    int[] before = counts[pos], after = counts[pos+1];
+    for(int k = 0; k < after.length; k++){
+      after[k] = before[k];
+    }
+    after[policy.classOf(index)]++;
+    state[pos+1] = matcher.next(state[pos], index);
+    return !matcher.isMatch(state[pos+1]) && policy.countsPossible(after, pos+1);
+  }
+
+  private void emit() {
+    for(int d = 0; d < length; d++){
+      password[d] = characters.toChar(digit[d]);
+    }
+    emitted++;
+    double estimatedTime = ((System.nanoTime() - startTime)/1000000.0); //calculate time to find the password
+    pw_check.storePass(new String(password), estimatedTime);
+  }
+
+  /**
+  * Binary min-heap of prefixes on parallel arrays, ordered by the cost of
+  * the prefix plus the least cost of completing it.
+  */
+  private static class Frontier {
+    private final double[] priority; //cost plus least completion cost
+    private final double[] cost; //cost of the prefix
+    private final long[] code; //the prefix's alphabet indices as a base R number
+    private final byte[] depth; //length of the prefix
+    private int n; //prefixes in the heap
+
+    Frontier(int capacity) {
+      priority = new double[capacity];
+      cost = new double[capacity];
+      code = new long[capacity];
+      depth = new byte[capacity];
+    }
+
+    boolean isEmpty() {
+      return n == 0;
+    }
+
+    int size() {
+      return n;
+    }
+
+    int capacity() {
+      return priority.length;
+    }
+
+    double minCost() {
+      return cost[0];
+    }
+
+    long minCode() {
+      return code[0];
+    }
+
+    int minDepth() {
+      return depth[0];
+    }
+
+    void push(double p, double c, long k, int d) {
+      int i = n++;
+      while(i > 0){ //sift up
+        int parent = (i-1) >>> 1;
+        if(priority[parent] <= p){
+          break;
+        }
+        move(parent, i);
+        i = parent;
+      }
+      set(i, p, c, k, d);
+    }
+
+    void pop() {
+      n--;
+      double p = priority[n], c = cost[n];
+      long k = code[n];
+      int d = depth[n];
+      int i = 0;
+      while(true){ //sift the last entry down from the root
+        int child = 2*i + 1;
+        if(child >= n){
+          break;
+        }
+        if(child+1 < n && priority[child+1] < priority[child]){
+          child++;
+        }
+        if(p <= priority[child]){
+          break;
+        }
+        move(child, i);
+        i = child;
+      }
+      if(n > 0){
+        set(i, p, c, k, d);
+      }
+    }
+
+    private void move(int from, int to) {
+      priority[to] = priority[from];
+      cost[to] = cost[from];
+      code[to] = code[from];
+      depth[to] = depth[from];
+    }
+
+    private void set(int i, double p, double c, long k, int d) {
+      priority[i] = p;
+      cost[i] = c;
+      code[i] = k;
+      depth[i] = (byte) d;
+    }
+  }
+}
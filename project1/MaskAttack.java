@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import dataStructures.*;
+
+/**
+* Mask attack: every candidate matching each of a list of masks, one mask
+* after another, last position fastest.
+*
+* A mask gives the characters allowed at each position, hashcat style:
+*   ?x  any character of the policy class whose name starts with x,
+*       e.g. ?l, ?n and ?s for the default letters, numbers and symbols
+*   ?a  any character of the alphabet
+*   ??  a literal ?
+*   c   any other character stands for itself
+* The default masks are the class patterns the policy allows (see
+* PatternSearch), fewest candidates first, the order an attacker who knows
+* the policy would try them in.
+*
+* @author Craig Mazzotta
+*/
+public class MaskAttack implements AttackEngine.Strategy {
+  private final List<char[][]> masks = new ArrayList<char[][]>(); //characters allowed at each position of each mask
+  private final long[] starts; //number of the first guess of each mask
+  private final long size; //guesses in every mask
+
+  /**
+  * @param policy The policy whose classes ?x refers to
+  * @param masks The masks, in the order to try them
+  * @throws IllegalArgumentException If a mask refers to a class the policy doesn't have
+  */
+  public MaskAttack(PasswordPolicy policy, List<String> masks) {
+    starts = new long[masks.size()];
+    long total = 0;
+    for(String mask : masks){
+      char[][] positions = parse(policy, mask);
+      long guesses = 1;
+      for(char[] allowed : positions){
+        guesses *= allowed.length;
+      }
+      if(guesses == 0){ //an empty class, no candidates
+        continue;
+      }
+      starts[this.masks.size()] = total;
+      this.masks.add(positions);
+      total += guesses;
+    }
+    size = total;
+  }
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @return The attack with the policy's class patterns as masks, fewest candidates first
+  */
+  public static MaskAttack defaults(PasswordPolicy policy) {
+    return new MaskAttack(policy, new PatternSearch(policy).masks());
+  }
+
+  private static char[][] parse(PasswordPolicy policy, String mask) {
+    Alphabet characters = policy.alphabet();
+    List<char[]> positions = new ArrayList<char[]>();
+    for(int i = 0; i < mask.length(); i++){
+      char c = mask.charAt(i);
+      if(c != '?'){
+        positions.add(new char[] {c});
+        continue;
+      }
+      if(++i == mask.length()){
+        throw new IllegalArgumentException("Mask \"" + mask + "\" ends with ?");
+      }
+      char x = mask.charAt(i);
+      if(x == '?'){
+        positions.add(new char[] {'?'});
+      } else if(x == 'a'){
+        positions.add(characters.toChars(indices(characters.radix(), -1, policy)).toCharArray());
+      } else {
+        int k = 0;
+        while(k < policy.classes() && Character.toLowerCase(policy.name(k).charAt(0)) != x){
+          k++;
+        }
+        if(k == policy.classes()){
+          throw new IllegalArgumentException("Mask \"" + mask + "\": no class starts with '" + x + "'");
+        }
+        positions.add(characters.toChars(indices(characters.radix(), k, policy)).toCharArray());
+      }
+    }
+    return positions.toArray(new char[0][]);
+  }
+
+  // alphabet indices of class k, or of the whole alphabet if k is -1
+  private static int[] indices(int R, int k, PasswordPolicy policy) {
+    int[] all = new int[R];
+    int n = 0;
+    for(int i = 0; i < R; i++){
+      if(k == -1 || policy.classOf(i) == k){
+        all[n++] = i;
+      }
+    }
+    return Arrays.copyOf(all, n);
+  }
+
+  @Override
+  public String name() {
+    return "mask";
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public boolean guess(long g, StringBuilder out) {
+    int m = Arrays.binarySearch(starts, 0, masks.size(), g);
+    if(m < 0){ //g is inside mask -m-2
+      m = -m-2;
+    }
+    char[][] mask = masks.get(m);
+    long rest = g - starts[m];
+    out.setLength(mask.length);
+    for(int i = mask.length-1; i >= 0; i--){ //last position fastest
+      int n = mask[i].length;
+      out.setCharAt(i, mask[i][(int) (rest % n)]);
+      rest /= n;
+    }
+    return true;
+  }
+}
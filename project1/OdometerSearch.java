@@ -0,0 +1,115 @@
+import dataStructures.*;
+
+/**
+* Odometer version of pw_check.genPasswords(). Candidates are counted like an
+* odometer over the alphabet indices, last position fastest, and everything
+* validation needs is kept per position, so a step only redoes the positions
+* that changed: almost always just the last one.
+*
+* For every depth d the search keeps the number of characters of each class
+* in the first d characters and the state pw_check.wordMatcher reaches after
+* reading them. Placing a character derives depth d+1 from depth d in
+* constant time. Carrying into position p redoes positions p to the end, which
+* happens once every R^(length-p-1) steps, so each candidate costs amortized O(1).
+*
+* A prefix is dead once a dictionary word ends in it or its class counts can't
+* be completed (see PasswordPolicy.countsPossible). The odometer then advances
+* that position at once, skipping every candidate below the prefix.
+*
+* Passwords are stored in alphabet order, as genPasswords() stores them.
+*
+* @author Craig Mazzotta
+*/
+public class OdometerSearch {
+  private final PasswordPolicy policy; //what a valid password looks like
+  private final Alphabet characters; //valid characters for a password
+  private final AhoCorasick matcher; //dictionary words with their substituted spellings
+  private final int length; //length of a password
+  private final int R; //number of valid characters
+  private final int[] digit; //alphabet index of the character at each position
+  private final char[] password; //the candidate
+  private final int[][] counts; //characters of each class in the first d characters
+  private final int[] state; //matcher state after the first d characters
+  private long placed; //characters placed
+  private long valid; //candidates reached with every character placed, all of them valid
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param matcher Automaton of the dictionary words and their substituted spellings
+  */
+  public OdometerSearch(PasswordPolicy policy, AhoCorasick matcher) {
+    this.policy = policy;
+    this.characters = policy.alphabet();
+    this.matcher = matcher;
+    this.length = policy.length();
+    this.R = characters.radix();
+    digit = new int[length];
+    password = new char[length];
+    counts = new int[length+1][policy.classes()];
+    state = new int[length+1];
+  }
+
+  /**
+  * Generates all valid passwords, storing them with pw_check.storePass(),
+  * then reports the work done per candidate.
+  */
+  public static void genPasswords() {
+    OdometerSearch search = new OdometerSearch(pw_check.policy, pw_check.wordMatcher);
+    long start = System.nanoTime();
+    search.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long keyspace = (long) Math.pow(search.R, search.length);
+    System.out.println("Placed " + search.placed + " characters for " + keyspace + " candidates ("
+      + ((double) search.placed / keyspace) + " per candidate), " + search.valid + " valid, "
+      + Math.round(keyspace / seconds) + " candidates/s");
+  }
+
+  /**
+  * Runs the odometer from the first candidate to the last.
+  */
+  public void run() {
+    long startTime = System.nanoTime();
+    placed = 0;
+    valid = 0;
+    state[0] = matcher.start();
+    int pos = 0; //first position whose character changed
+    while(true){
+      while(pos < length && place(pos)){ //redo the positions after the one that changed
+        pos++;
+      }
+      if(pos == length){ //every character placed and the prefix never died, so the password is valid
+        valid++;
+        double estimatedTime = ((System.nanoTime() - startTime)/1000000.0); //calculate time to find the password
+        pw_check.storePass(new String(password), estimatedTime);
+        pos = length-1;
+      }
+      while(pos >= 0 && ++digit[pos] == R){ //advance, carrying into earlier positions
+        digit[pos] = 0;
+        pos--;
+      }
+      if(pos < 0){ //every candidate tried
+        return;
+      }
+    }
+  }
+
+  /**
+  * Places the character of digit[pos], deriving the counts and matcher state
+  * after it from those before it. Positions after pos always hold 0 here.
+  *
+  * @param pos The position to fill in
+  * @return True if some password can still start with the first pos+1 characters
+  */
+  private boolean place(int pos) {
+    int index = digit[pos];
+    password[pos] = characters.toChar(index);
+    int[] before = counts[pos], after = counts[pos+1];
+    for(int k = 0; k < after.length; k++){
+      after[k] = before[k];
+    }
+    after[policy.classOf(index)]++;
+    state[pos+1] = matcher.next(state[pos], index);
+    placed++;
+    return !matcher.isMatch(state[pos+1]) && policy.countsPossible(after, pos+1);
+  }
+}
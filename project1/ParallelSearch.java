@@ -0,0 +1,102 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import dataStructures.*;
+
+/**
+* Fork-join version of pw_check.genPasswords(). The keyspace is split on the
+* first one or two characters of the password and each slice is enumerated by
+* its own task, which validates every candidate through pw_check.validatePassword().
+*
+* Each task gathers the valid passwords of its slice into batches that are
+* handed to pw_check.storeBatch() as they fill, so slices are written in the
+* order they finish. Once sorted, all_passwords.txt lists the same passwords
+* as the serial search.
+*
+* @author Craig Mazzotta
+*/
+public class ParallelSearch extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  private final int length = pw_check.policy.length(); //length of a password
+  private final int R = pw_check.characters.radix(); //number of valid characters
+
+  private final char[] prefix; //characters fixed for this slice of the keyspace
+  private final int splitDepth; //number of leading characters the keyspace is split on
+  private final long startTime; //start of the search, shared by every task
+  private PasswordWriter.Batch batch; //password,time lines not yet stored
+
+  /**
+  * @param prefix The characters fixed for this slice
+  * @param splitDepth The number of leading characters to split the keyspace on
+  * @param startTime The time the search began
+  */
+  private ParallelSearch(char[] prefix, int splitDepth, long startTime) {
+    this.prefix = prefix;
+    this.splitDepth = splitDepth;
+    this.startTime = startTime;
+  }
+
+  /**
+  * Generates all valid passwords using every available core, storing them
+  * with pw_check.storeBatch().
+  *
+  * @param splitDepth The number of leading characters to split the keyspace on (1 or 2)
+  * @throws IllegalArgumentException if splitDepth is not 1 or 2
+  */
+  public static void genPasswords(int splitDepth) {
+    if(splitDepth < 1 || splitDepth > 2){
+      throw new IllegalArgumentException("The keyspace can only be split on the first one or two characters");
+    }
+    ParallelSearch search = new ParallelSearch(new char[0], splitDepth, System.nanoTime());
+    ForkJoinPool.commonPool().invoke(search);
+  }
+
+  /**
+  * Splits this slice on its next character, or enumerates it once the
+  * split depth is reached.
+  */
+  @Override
+  protected void compute() {
+    if(prefix.length < splitDepth){
+      ParallelSearch[] slices = new ParallelSearch[R];
+      for(int i = 0; i < R; i++){
+        char[] next = new char[prefix.length+1];
+        System.arraycopy(prefix, 0, next, 0, prefix.length);
+        next[prefix.length] = pw_check.characters.toChar(i);
+        slices[i] = new ParallelSearch(next, splitDepth, startTime);
+      }
+      invokeAll(slices);
+    } else {
+      batch = new PasswordWriter.Batch();
+      StringBuilder attempt = new StringBuilder(length);
+      attempt.append(prefix);
+      attempt.setLength(length);
+      enumerate(attempt, prefix.length);
+      pw_check.storeBatch(batch);
+      batch = null;
+    }
+  }
+
+  /**
+  * Fills in the remaining characters of the slice one position at a time
+  * and validates each full candidate.
+  *
+  * @param attempt The candidate being built
+  * @param pos The position to fill in next
+  */
+  private void enumerate(StringBuilder attempt, int pos) {
+    if(pos == length){
+      if(pw_check.validatePassword(attempt)){
+        batch.add(attempt, (System.nanoTime() - startTime)/1000000.0);
+        if(batch.isFull()){
+          pw_check.storeBatch(batch);
+          batch = new PasswordWriter.Batch();
+        }
+      }
+      return;
+    }
+    for(int i = 0; i < R; i++){
+      attempt.setCharAt(pos, pw_check.characters.toChar(i));
+      enumerate(attempt, pos+1);
+    }
+  }
+}
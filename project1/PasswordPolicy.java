@@ -0,0 +1,305 @@
+import java.io.*;
+import java.util.Properties;
+import dataStructures.*;
+
+/**
+* A password policy: the length of a password, the classes of characters it
+* is made of with the minimum and maximum number of each, and the
+* substitutions of characters for letters that still spell a word.
+*
+* The default policy is the project's:
+*   5 characters long, containing
+*   1-3 letters, 1-2 numbers (0-9) and 1-2 symbols ("!", "@", "$", "^", "_", or "*")
+*   "7" for "t", "4" for "a", "0" for "o", "3" for "e", "1" for "i", "1" for "l", "$" for "s"
+*
+* Other policies are read from a properties file by load(), e.g.
+*   length=6
+*   classes=letters,numbers,symbols
+*   letters=abcdefghijklmnopqrstuvwxyz
+*   letters.min=2
+*   letters.max=4
+*   numbers=0123456789
+*   numbers.min=1
+*   numbers.max=2
+*   symbols=!@$^_*
+*   symbols.min=1
+*   symbols.max=2
+*   substitutions=t7 a4 o0 e3 i1 l1 s$
+* The alphabet is the characters of the classes in the order they're listed,
+* with each class as one of its groups, so alphabet().group(c) is the class of c.
+* Each substitution is a letter followed by the character that can replace it.
+*
+* Besides checking a finished password, the policy tells a generator whether
+* the characters placed so far can still be completed (see countsPossible),
+* so prefixes breaking the class bounds are cut at the depth they go wrong.
+*
+* @author Craig Mazzotta
+*/
+public class PasswordPolicy {
+  public static final int MAX_LENGTH = 16; //longest password a policy can have
+  public static final PasswordPolicy DEFAULT = new PasswordPolicy(5,
+    new String[] {"letters", "numbers", "symbols"},
+    new String[] {"abcdefghijklmnopqrstuvwxyz", "0123456789", "!@$^_*"},
+    new int[] {1, 1, 1}, new int[] {3, 2, 2},
+    new char[] {'t', 'a', 'o', 'e', 'i', 'l', 's'},
+    new char[] {'7', '4', '0', '3', '1', '1', '$'});
+
+  private final int length; //length of a password
+  private final String[] names; //name of each class
+  private final int[] min; //fewest characters of each class
+  private final int[] max; //most characters of each class
+  private final Alphabet alphabet; //characters of every class, in class order
+  private final byte[] classOf; //class of each alphabet index
+  private final char[] letters; //letters that can be substituted
+  private final char[] substitutes; //substitute for each letter
+  private final char[][] readings; //letters each alphabet index can stand for in a word
+
+  /**
+  * @param length The length of a password
+  * @param names The name of each character class
+  * @param classes The characters of each class
+  * @param min The fewest characters of each class a password can have
+  * @param max The most characters of each class a password can have
+  * @param letters The letters that can be substituted
+  * @param substitutes The substitute for each letter; a letter can be listed more
+  *     than once to give it several substitutes, and several letters can share one
+  * @throws IllegalArgumentException if the classes overlap or no password
+  *     of the given length can satisfy the bounds
+  */
+  public PasswordPolicy(int length, String[] names, String[] classes, int[] min, int[] max,
+      char[] letters, char[] substitutes) {
+    if(length < 1 || length > MAX_LENGTH){
+      throw new IllegalArgumentException("Password length must be between 1 and " + MAX_LENGTH);
+    }
+    if(names.length != classes.length || min.length != classes.length || max.length != classes.length){
+      throw new IllegalArgumentException("Every character class needs a name, a minimum and a maximum");
+    }
+    if(letters.length != substitutes.length){
+      throw new IllegalArgumentException("Every substituted letter needs a substitute");
+    }
+    int fewest = 0, most = 0;
+    for(int k = 0; k < classes.length; k++){
+      if(min[k] < 0 || min[k] > max[k]){
+        throw new IllegalArgumentException("Invalid bounds for " + names[k] + ": " + min[k] + "-" + max[k]);
+      }
+      fewest += min[k];
+      most += max[k];
+    }
+    if(fewest > length || most < length){
+      throw new IllegalArgumentException("No password of length " + length + " fits the class bounds");
+    }
+    this.length = length;
+    this.names = names.clone();
+    this.min = min.clone();
+    this.max = max.clone();
+    this.alphabet = new Alphabet(classes); //rejects repeated characters; each class is a group
+    this.letters = letters.clone();
+    this.substitutes = substitutes.clone();
+
+    classOf = new byte[alphabet.radix()];
+    for(int i = 0; i < classOf.length; i++){
+      classOf[i] = (byte) alphabet.groupOf(i);
+    }
+    readings = new char[alphabet.radix()][];
+    for(int i = 0; i < readings.length; i++){
+      char c = alphabet.toChar(i);
+      StringBuilder read = new StringBuilder();
+      for(int j = 0; j < substitutes.length; j++){
+        if(substitutes[j] == c){
+          read.append(letters[j]);
+        }
+      }
+      readings[i] = read.length() == 0 ? new char[] {c} : read.toString().toCharArray();
+    }
+  }
+
+  /**
+  * Reads a policy from a properties file (see the class comment for the format).
+  *
+  * @param file The properties file
+  * @return The policy
+  * @throws IOException If the file can't be read
+  * @throws IllegalArgumentException If a property is missing or invalid
+  */
+  public static PasswordPolicy load(File file) throws IOException {
+    Properties properties = new Properties();
+    try (Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+      properties.load(in);
+    }
+    String[] names = required(properties, "classes").split("\\s*,\\s*");
+    String[] classes = new String[names.length];
+    int[] min = new int[names.length];
+    int[] max = new int[names.length];
+    for(int k = 0; k < names.length; k++){
+      classes[k] = required(properties, names[k]);
+      min[k] = number(properties, names[k] + ".min");
+      max[k] = number(properties, names[k] + ".max");
+    }
+    String[] pairs = properties.getProperty("substitutions", "").trim().split("\\s+");
+    int count = pairs[0].isEmpty() ? 0 : pairs.length;
+    char[] letters = new char[count];
+    char[] substitutes = new char[count];
+    for(int j = 0; j < count; j++){
+      if(pairs[j].length() != 2){
+        throw new IllegalArgumentException("Substitutions are a letter and its substitute, not \"" + pairs[j] + "\"");
+      }
+      letters[j] = pairs[j].charAt(0);
+      substitutes[j] = pairs[j].charAt(1);
+    }
+    return new PasswordPolicy(number(properties, "length"), names, classes, min, max, letters, substitutes);
+  }
+
+  private static String required(Properties properties, String key) {
+    String value = properties.getProperty(key);
+    if(value == null || value.trim().isEmpty()){
+      throw new IllegalArgumentException("Policy is missing \"" + key + "\"");
+    }
+    return value.trim();
+  }
+
+  private static int number(Properties properties, String key) {
+    try {
+      return Integer.parseInt(required(properties, key));
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Policy property \"" + key + "\" must be a number");
+    }
+  }
+
+  /**
+  * @return The policy in one line, e.g.
+  *     "5 characters: letters a..z 1-3, numbers 0..9 1-2, symbols !@$^_* 1-2; t7 a4 o0 e3 i1 l1 s$"
+  *     with every character of a class listed
+  */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    text.append(length).append(" characters:");
+    for(int k = 0; k < min.length; k++){
+      text.append(k == 0 ? " " : ", ").append(names[k]).append(' ');
+      for(int i = 0; i < classOf.length; i++){
+        if(classOf[i] == k){
+          text.append(alphabet.toChar(i));
+        }
+      }
+      text.append(' ').append(min[k]).append('-').append(max[k]);
+    }
+    text.append(';');
+    for(int j = 0; j < letters.length; j++){
+      text.append(' ').append(letters[j]).append(substitutes[j]);
+    }
+    return text.toString();
+  }
+
+  /**
+  * @return The length of a password
+  */
+  public int length() {
+    return length;
+  }
+
+  /**
+  * @return The characters a password is made of, in class order
+  */
+  public Alphabet alphabet() {
+    return alphabet;
+  }
+
+  /**
+  * @return The number of character classes
+  */
+  public int classes() {
+    return min.length;
+  }
+
+  /**
+  * @param k A character class
+  * @return The name of the class
+  */
+  public String name(int k) {
+    return names[k];
+  }
+
+  /**
+  * @param index An alphabet index
+  * @return The character class of the alphabet's character at that index
+  */
+  public int classOf(int index) {
+    return classOf[index];
+  }
+
+  /**
+  * @param k A character class
+  * @return The fewest characters of the class a password can have
+  */
+  public int min(int k) {
+    return min[k];
+  }
+
+  /**
+  * @param k A character class
+  * @return The most characters of the class a password can have
+  */
+  public int max(int k) {
+    return max[k];
+  }
+
+  /**
+  * @return The letters that can be substituted; share, don't modify
+  */
+  public char[] letters() {
+    return letters;
+  }
+
+  /**
+  * @return The substitute for each of letters(); share, don't modify
+  */
+  public char[] substitutes() {
+    return substitutes;
+  }
+
+  /**
+  * Returns the letters a password character can stand for in a dictionary
+  * word: the letters it substitutes for, or else the character itself.
+  *
+  * @param index An alphabet index
+  * @return The readings of the character, first the one to try first; share, don't modify
+  */
+  public char[] readings(int index) {
+    return readings[index];
+  }
+
+  /**
+  * Checks whether a prefix with the given number of characters of each class
+  * can still be completed to a password: no class is over its maximum, the
+  * positions left can make up every class still under its minimum, and the
+  * classes still under their maximum can fill the positions left.
+  *
+  * @param counts The number of characters of each class placed so far
+  * @param d The number of characters placed, at most length()
+  * @return True if some password starts with such a prefix
+  */
+  public boolean countsPossible(int[] counts, int d) {
+    int remaining = length - d;
+    int missing = 0; //characters needed to reach every minimum
+    int room = 0; //characters that can be added before every class is at its maximum
+    for(int k = 0; k < min.length; k++){
+      if(counts[k] > max[k]){
+        return false;
+      }
+      if(counts[k] < min[k]){
+        missing += min[k] - counts[k];
+      }
+      room += max[k] - counts[k];
+    }
+    return missing <= remaining && room >= remaining;
+  }
+
+  /**
+  * @param counts The number of characters of each class in a password
+  * @return True if the counts are within every class's bounds
+  */
+  public boolean countsValid(int[] counts) {
+    return countsPossible(counts, length);
+  }
+}
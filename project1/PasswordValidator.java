@@ -0,0 +1,336 @@
+import dataStructures.*;
+
+/**
+* Validates candidate passwords against a PasswordPolicy without allocating.
+* Each validator owns a scratch buffer that candidates are copied into, so a
+* validator must only be used by one thread at a time.
+*
+* Under the default policy a password must be 5 characters long containing:
+*   1-3 letters
+*   1-2 numbers (0-9)
+*   1-2 symbols ("!", "@", "$", "^", "_", or "*")
+* and can't contain a dictionary word, even with numbers/symbols substituted
+* for letters ("7" for "t", "4" for "a", "0" for "o", "3" for "e", "1" for "i",
+* "1" for "l", or "$" for "s").
+*
+* The characters are classified in one pass over the alphabet's ASCII group
+* table (see Alphabet.classify), and the class counts are checked before the
+* readings are looked up, so most candidates are rejected on the counts alone.
+*
+* Dictionary lookups walk the DLB one character at a time over the scratch
+* buffer instead of building substrings. A validator given a BloomFilter of
+* the words instead checks every substring against the filter, with a hash
+* extended one character at a time, and only walks the DLB on a hit.
+* Search results can also be shared through a SearchCache, keyed by the
+* substring packed into an int: each letter is given a code from 1 to C and the
+* substring is read as a base C+1 number, so substrings of different lengths
+* get different keys. Substrings too long for a key just aren't cached.
+* A validator given an AhoCorasick matcher instead finds words in the same
+* pass that counts the characters.
+*
+* @author Craig Mazzotta
+*/
+public class PasswordValidator {
+  static final char BREAK = '\0'; //marks a character that can't be part of a word
+
+  private final PasswordPolicy policy; //what a valid password looks like
+  private final Alphabet characters; //valid characters for a password
+  private final int length; //length of a valid password
+  private final FrozenDLB dictionary; //words a password can't contain
+  private final BloomFilter filter; //words, null to always walk the DLB
+  private final SearchCache cache; //results of earlier searches, null to always search
+  private final AhoCorasick matcher; //words and their substituted spellings, null to use the DLB
+  private final char[] reading; //first reading of each alphabet index, BREAK if no word contains it
+  private final int[][] readingCodes; //key code of each reading of each alphabet index
+  private final int base; //radix substrings are packed in for the cache
+  private final int cacheable; //longest substring whose key fits in the cache
+  private final int[] min; //fewest characters of each class
+  private final int[] max; //most characters of each class
+  private final int[] counts; //characters of each class in the password
+  private final char[] chars; //the password's characters
+  private final byte[] classes; //character class of each of chars, the policy's classes being the alphabet's groups
+  private final char[] word; //password with substitutions made
+  private final int[] code; //key code of each letter of word, 0 for BREAK
+  private final int[] ambiguous; //positions of characters with several readings, like '1' for 'i' or 'l'
+  private final char[][] options; //readings of the character at each ambiguous position
+  private final int[][] optionCodes; //key codes of those readings
+  private final int[] choice; //reading currently in word for each ambiguous position
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param dictionary The frozen DLB trie of words a password can't contain
+  */
+  public PasswordValidator(PasswordPolicy policy, FrozenDLB dictionary) {
+    this(policy, dictionary, null);
+  }
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param dictionary The frozen DLB trie of words a password can't contain
+  * @param matcher Automaton of the words with their substitutions, or null to use the DLB
+  */
+  public PasswordValidator(PasswordPolicy policy, FrozenDLB dictionary, AhoCorasick matcher) {
+    this(policy, dictionary, null, null, matcher);
+  }
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param dictionary The frozen DLB trie of words a password can't contain
+  * @param filter Bloom filter of the words short enough to be in a password, or null
+  * @param cache Cache of dictionary search results, shared by validators of the same
+  *     policy and dictionary, or null
+  * @param matcher Automaton of the words with their substitutions, or null to use the DLB
+  */
+  public PasswordValidator(PasswordPolicy policy, FrozenDLB dictionary, BloomFilter filter,
+      SearchCache cache, AhoCorasick matcher) {
+    this.policy = policy;
+    this.characters = policy.alphabet();
+    this.length = policy.length();
+    this.dictionary = dictionary;
+    this.filter = filter;
+    this.cache = cache;
+    this.matcher = matcher;
+    counts = new int[policy.classes()];
+    min = new int[counts.length];
+    max = new int[counts.length];
+    for(int k = 0; k < counts.length; k++){
+      min[k] = policy.min(k);
+      max[k] = policy.max(k);
+    }
+    chars = new char[length];
+    classes = new byte[length];
+    word = new char[length];
+    code = new int[length];
+    ambiguous = new int[length];
+    options = new char[length][];
+    optionCodes = new int[length][];
+    choice = new int[length];
+    reading = firstReadings(policy, dictionary);
+
+    StringBuilder letters = new StringBuilder(); //every letter a character can read as; codes are 1 + position
+    readingCodes = new int[characters.radix()][];
+    for(int i = 0; i < readingCodes.length; i++){
+      char[] readings = policy.readings(i);
+      readingCodes[i] = new int[readings.length];
+      for(int j = 0; j < readings.length; j++){
+        if(letters.indexOf(String.valueOf(readings[j])) < 0){
+          letters.append(readings[j]);
+        }
+        readingCodes[i][j] = letters.indexOf(String.valueOf(readings[j])) + 1;
+      }
+    }
+    base = letters.length() + 1;
+    cacheable = longestKey(base, length);
+  }
+
+  /**
+  * Tells pw_check whether a Bloom filter would ever be consulted: with a
+  * cache, only substrings longer than this go to the filter.
+  *
+  * @param policy The policy passwords must satisfy
+  * @return The longest substring of a password a SearchCache can answer
+  */
+  public static int cacheableLength(PasswordPolicy policy) {
+    StringBuilder letters = new StringBuilder(); //every letter a character can read as
+    for(int i = 0; i < policy.alphabet().radix(); i++){
+      for(char c : policy.readings(i)){
+        if(letters.indexOf(String.valueOf(c)) < 0){
+          letters.append(c);
+        }
+      }
+    }
+    return longestKey(letters.length() + 1, policy.length());
+  }
+
+  /**
+  * @param base The radix substrings are packed in
+  * @param length The length of a password
+  * @return The longest substring, at most length, whose key fits in a SearchCache
+  */
+  private static int longestKey(int base, int length) {
+    int longest = 0;
+    for(long keys = base; keys <= SearchCache.MAX_KEY && longest < length; keys *= base){
+      longest++;
+    }
+    return longest;
+  }
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param dictionary The frozen DLB trie of words a password can't contain
+  * @return The first reading of each alphabet index, or BREAK for a character
+  *     that reads as no letter in any word (e.g. '2'), so a word can't go through it
+  */
+  static char[] firstReadings(PasswordPolicy policy, FrozenDLB dictionary) {
+    char[] first = new char[policy.alphabet().radix()];
+    for(int i = 0; i < first.length; i++){
+      char[] readings = policy.readings(i);
+      first[i] = BREAK;
+      for(char c : readings){
+        if(dictionary.occurs(c)){
+          first[i] = readings[0];
+        }
+      }
+    }
+    return first;
+  }
+
+  /**
+  * Validates a password. The password itself is never modified.
+  *
+  * @param password The password to be validated
+  * @return True if the password is valid, otherwise false
+  */
+  public boolean validate(CharSequence password) {
+    if(password.length() != length){ //password is of incorrect length
+      return false;
+    }
+
+    for(int i = 0; i < length; i++){
+      chars[i] = password.charAt(i);
+    }
+    if(!characters.classify(chars, classes)){ //password contains an INVALID character
+      return false;
+    }
+    for(int k = 0; k < counts.length; k++){
+      counts[k] = 0;
+    }
+    for(int i = 0; i < length; i++){
+      int k = classes[i];
+      if(++counts[k] > max[k]){ //too many of a character type
+        return false;
+      }
+    }
+    for(int k = 0; k < counts.length; k++){
+      if(counts[k] < min[k]){ //too few of a character type
+        return false;
+      }
+    }
+
+    if(matcher != null){
+      int state = matcher.start(); //state of the word matcher
+      for(int i = 0; i < length; i++){
+        state = matcher.next(state, characters.indexOf(chars[i]));
+        if(matcher.isMatch(state)){ //a word ends at this character
+          return false;
+        }
+      }
+      return true;
+    }
+    return !hasWord(readPassword());
+  }
+
+  /**
+  * Runs only the dictionary word check of validate(), skipping the length,
+  * character and class count checks, so Benchmark can time the real word
+  * scan with its readings, cache and filter.
+  *
+  * @param password A password of the policy's length made of alphabet characters
+  * @return True if the password contains a dictionary word
+  */
+  boolean containsWord(CharSequence password) {
+    for(int i = 0; i < length; i++){
+      chars[i] = password.charAt(i);
+    }
+    return hasWord(readPassword());
+  }
+
+  /**
+  * Fills word and code with the first reading of each character of chars
+  * and records the characters with several readings.
+  *
+  * @return The number of ambiguous characters in the password
+  */
+  private int readPassword() {
+    int numAmbiguous = 0; //number of characters with several readings
+    for(int i = 0; i < length; i++){
+      int index = characters.indexOf(chars[i]);
+      word[i] = reading[index];
+      code[i] = reading[index] == BREAK ? 0 : readingCodes[index][0];
+      char[] readings = policy.readings(index);
+      if(readings.length > 1 && reading[index] != BREAK){
+        options[numAmbiguous] = readings;
+        optionCodes[numAmbiguous] = readingCodes[index];
+        ambiguous[numAmbiguous++] = i;
+      }
+    }
+    return numAmbiguous;
+  }
+
+  /**
+  * Checks the substituted password for a dictionary word, trying every
+  * combination of readings for the ambiguous characters in the password
+  * (e.g. 'i' and 'l' for the 1's).
+  *
+  * @param numAmbiguous The number of ambiguous characters in the password
+  * @return True if the password contains a word
+  */
+  private boolean hasWord(int numAmbiguous) {
+    for(int j = 0; j < numAmbiguous; j++){
+      choice[j] = 0;
+    }
+    while(true){
+      for(int start = 0; start < length; start++){
+        if(wordAt(start)){
+          return true;
+        }
+      }
+      int j = 0; //advance to the next combination, first position fastest
+      while(j < numAmbiguous && ++choice[j] == options[j].length){
+        choice[j] = 0;
+        word[ambiguous[j]] = options[j][0];
+        code[ambiguous[j]] = optionCodes[j][0];
+        j++;
+      }
+      if(j == numAmbiguous){ //every combination tried
+        return false;
+      }
+      word[ambiguous[j]] = options[j][choice[j]];
+      code[ambiguous[j]] = optionCodes[j][choice[j]];
+    }
+  }
+
+  /**
+  * Walks the dictionary from the given position until the characters
+  * stop forming a prefix of a word. With a filter, every substring starting
+  * at the position is probed instead, and the DLB is only searched for
+  * substrings the filter might hold. With a cache, substrings short enough
+  * to have a key are walked through the cache, which answers nearly every
+  * search after the first few thousand, and the filter is left for longer ones.
+  *
+  * @param start The index the word would start at
+  * @return True if a word starts at the index
+  */
+  private boolean wordAt(int start) {
+    long hash = BloomFilter.SEED; //hash of word[start..hashed)
+    int hashed = start; //the hash is only extended once the cache is left behind
+    int key = 0; //cache key of word[start..end)
+    for(int end = start+1; end <= length && word[end-1] != BREAK; end++){
+      int result;
+      if(cache != null && end - start <= cacheable){
+        key = key * base + code[end-1];
+        result = cache.get(key);
+        if(result < 0){
+          result = dictionary.search(word, start, end);
+          cache.put(key, result);
+        }
+      } else if(filter != null){ //a probe is cheaper than the walk, and almost always misses
+        while(hashed < end){
+          hash = BloomFilter.extend(hash, word[hashed++]);
+        }
+        if(filter.mightContain(hash) && (dictionary.search(word, start, end) & 2) != 0){
+          return true;
+        }
+        continue;
+      } else {
+        result = dictionary.search(word, start, end);
+      }
+      if(result == 2 || result == 3){ //string in question is a word
+        return true;
+      } else if(result == 0){ //not a word or a prefix, no longer string can be a word
+        return false;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,258 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import dataStructures.PasswordIndex;
+
+/**
+* Streams password,time lines to a file for the whole run of -find.
+*
+* Lines are collected into batches of about BATCH_SIZE characters. Full batches
+* go through a bounded queue to a single writer thread, which keeps one buffered
+* stream open until close(). A producer that gets too far ahead of the disk
+* blocks on the queue instead of building up memory.
+*
+* write() batches lines for the thread that owns the writer. Other producer
+* threads fill their own Batch and hand it over with submit().
+*
+* The writer thread can also feed every password into a PasswordIndex.Builder,
+* so the binary index is built without parsing the text back in.
+*
+* flush() waits until everything written so far has reached the file, so a
+* caller can record how much of the file is complete (see Checkpoint).
+*
+* @author Craig Mazzotta
+*/
+public class PasswordWriter implements Closeable {
+  public static final int BATCH_SIZE = 1 << 16; //characters in a batch before it is queued
+  private static final int BUFFER_SIZE = 1 << 20; //bytes buffered before a write to the file
+  private static final Batch END = new Batch(); //queued by close() to stop the writer thread
+
+  private final BlockingQueue<Batch> queue; //full batches waiting to be written
+  private final Writer out; //buffered stream to the file
+  private final PasswordIndex.Builder index; //also receives every password, may be null
+  private final Thread writerThread; //drains the queue into out
+  private Batch current = new Batch(); //batch filled by write()
+  private volatile IOException error; //first error hit by the writer thread
+
+  /**
+  * Opens the file, replacing anything already in it.
+  *
+  * @param file The file to write to
+  * @param index Builder that is also given every password, or null
+  * @param capacity The number of full batches that can wait in the queue
+  * @throws IOException If the file can't be opened
+  */
+  public PasswordWriter(File file, PasswordIndex.Builder index, int capacity) throws IOException {
+    this(file, false, index, capacity);
+  }
+
+  /**
+  * Opens the file, replacing or adding to anything already in it.
+  *
+  * @param file The file to write to
+  * @param append True to add lines after the file's current contents
+  * @param index Builder that is also given every password, or null
+  * @param capacity The number of full batches that can wait in the queue
+  * @throws IOException If the file can't be opened
+  */
+  public PasswordWriter(File file, boolean append, PasswordIndex.Builder index, int capacity) throws IOException {
+    this(new FileOutputStream(file, append), index, capacity);
+  }
+
+  /**
+  * @param stream The stream to write to
+  * @param index Builder that is also given every password, or null
+  * @param capacity The number of full batches that can wait in the queue
+  */
+  public PasswordWriter(OutputStream stream, PasswordIndex.Builder index, int capacity) {
+    queue = new ArrayBlockingQueue<Batch>(capacity);
+    out = new BufferedWriter(new OutputStreamWriter(stream), BUFFER_SIZE);
+    this.index = index;
+    writerThread = new Thread(this::drain, "password-writer");
+    writerThread.start();
+  }
+
+  /**
+  * Adds a line to the current batch, queueing the batch once it is full.
+  * Only the thread that owns this writer may call write().
+  *
+  * @param password The valid password found
+  * @param time The time it took to find the password
+  * @throws IOException If an earlier batch couldn't be written
+  */
+  public void write(CharSequence password, double time) throws IOException {
+    current.add(password, time);
+    if(current.isFull()){
+      submit(current);
+      current = new Batch();
+    }
+  }
+
+  /**
+  * Queues a batch of lines to be written, waiting while the queue is full.
+  * Can be called from any thread; the batch must not be changed afterwards.
+  *
+  * @param batch The lines to write
+  * @throws IOException If an earlier batch couldn't be written
+  */
+  public void submit(Batch batch) throws IOException {
+    if(error != null){
+      throw error;
+    }
+    if(batch.n == 0){
+      return;
+    }
+    put(batch);
+  }
+
+  /**
+  * Writes out the current batch and everything queued, and waits until it
+  * has been passed to the file. Only the thread that owns this writer may
+  * call flush(), and only while no other thread is submitting batches.
+  *
+  * @throws IOException If any batch couldn't be written
+  */
+  public void flush() throws IOException {
+    submit(current);
+    current = new Batch();
+    Batch marker = new Batch();
+    marker.flushed = new CountDownLatch(1);
+    put(marker);
+    try {
+      marker.flushed.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing passwords");
+    }
+    if(error != null){
+      throw error;
+    }
+  }
+
+  private void put(Batch batch) throws IOException {
+    try {
+      queue.put(batch);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while queueing passwords");
+    }
+  }
+
+  /**
+  * Writes out the current batch and everything queued, then closes the file.
+  * The writer thread is stopped even after an error, which is thrown once it has.
+  *
+  * @throws IOException If any batch couldn't be written
+  */
+  @Override
+  public void close() throws IOException {
+    if(current.n > 0){ //put rather than submit, so an earlier error can't skip END
+      put(current);
+    }
+    current = new Batch();
+    try {
+      queue.put(END);
+      writerThread.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing password writer");
+    }
+    out.close();
+    if(error != null){
+      throw error;
+    }
+  }
+
+  /**
+  * Body of the writer thread: writes batches until close() queues END.
+  * After an error batches are still taken off the queue so producers
+  * don't block, and the error is reported to them instead. A runtime
+  * exception, e.g. from the index, is recorded the same way, wrapped in an
+  * IOException, rather than ending the thread.
+  */
+  private void drain() {
+    try {
+      Batch batch;
+      while((batch = queue.take()) != END){
+        if(batch.flushed != null){ //flush() is waiting for everything before it
+          try {
+            if(error == null){
+              out.flush();
+            }
+          }
+          catch (IOException e) {
+            error = e;
+          }
+          batch.flushed.countDown();
+          continue;
+        }
+        if(error == null){
+          try {
+            out.append(batch.lines);
+            if(index != null){
+              for(int i = 0; i < batch.n; i++){
+                index.add(batch.lines, batch.starts[i], batch.times[i]);
+              }
+            }
+          }
+          catch (IOException e) {
+            error = e;
+          }
+          catch (RuntimeException e) {
+            error = new IOException("Unable to store passwords: " + e, e);
+          }
+        }
+      }
+      out.flush();
+    }
+    catch (InterruptedException e) {
+      error = new InterruptedIOException("Password writer interrupted");
+    }
+    catch (IOException e) {
+      if(error == null){
+        error = e;
+      }
+    }
+  }
+
+  /**
+  * A batch of password,time lines built by one producer thread. The start of
+  * each line and its time are kept alongside the text for the index.
+  */
+  public static class Batch {
+    private final StringBuilder lines = new StringBuilder(BATCH_SIZE + 32); //password,time lines
+    private int[] starts = new int[1024]; //index of the first character of each line
+    private double[] times = new double[1024]; //time on each line
+    private int n; //number of lines
+    private CountDownLatch flushed; //set on the marker queued by flush()
+
+    /**
+    * Adds a password,time line to the batch.
+    *
+    * @param password The valid password found
+    * @param time The time it took to find the password
+    */
+    public void add(CharSequence password, double time) {
+      if(n == starts.length){
+        starts = Arrays.copyOf(starts, 2*n);
+        times = Arrays.copyOf(times, 2*n);
+      }
+      starts[n] = lines.length();
+      times[n] = time;
+      n++;
+      lines.append(password).append(',').append(time).append('\n');
+    }
+
+    /**
+    * @return True once the batch holds about BATCH_SIZE characters
+    */
+    public boolean isFull() {
+      return lines.length() >= BATCH_SIZE;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.List;
+import dataStructures.*;
+
+/**
+* Version of pw_check.genPasswords() that enumerates class patterns first.
+*
+* A pattern gives the character class of every position of a password, e.g.
+* LLNSS for two letters, then two numbers, then two symbols. Only the
+* patterns whose class counts satisfy the policy can hold a valid password,
+* so those are listed first (see PasswordPolicy.countsPossible) and each is
+* then filled in with every combination of characters of its classes. The
+* candidates that break the count rules are never generated; the ones left
+* only need the dictionary check, done by pw_check.validatePassword().
+*
+* Each pattern is named by the first letters of its classes' names, and its
+* candidates, valid passwords and candidates per second are reported as it
+* finishes. Patterns are searched in class order, so all_passwords.txt isn't
+* sorted; the index is sorted when it is written.
+*
+* @author Craig Mazzotta
+*/
+public class PatternSearch {
+  private final PasswordPolicy policy; //what a valid password looks like
+  private final int length; //length of a password
+  private final char[][] members; //characters of each class, in alphabet order
+  private final List<byte[]> patterns = new ArrayList<byte[]>(); //admissible class patterns
+  private long startTime; //start of the search
+
+  /**
+  * Lists the admissible class patterns of a policy.
+  *
+  * @param policy The policy passwords must satisfy
+  */
+  public PatternSearch(PasswordPolicy policy) {
+    this.policy = policy;
+    this.length = policy.length();
+    Alphabet characters = policy.alphabet();
+    int[] sizes = new int[policy.classes()];
+    for(int i = 0; i < characters.radix(); i++){
+      sizes[policy.classOf(i)]++;
+    }
+    members = new char[sizes.length][];
+    for(int k = 0; k < sizes.length; k++){
+      members[k] = new char[sizes[k]];
+      sizes[k] = 0;
+    }
+    for(int i = 0; i < characters.radix(); i++){
+      int k = policy.classOf(i);
+      members[k][sizes[k]++] = characters.toChar(i);
+    }
+    listPatterns(new byte[length], new int[sizes.length], 0);
+  }
+
+  /**
+  * Generates all valid passwords, storing them with pw_check.storePass(),
+  * reporting each pattern as it finishes.
+  */
+  public static void genPasswords() {
+    PatternSearch search = new PatternSearch(pw_check.policy);
+    System.out.println(search.patterns() + " class patterns, " + search.candidates() + " of "
+      + search.keyspace() + " candidates (" + (100.0 * search.candidates() / search.keyspace()) + "%)");
+    search.run();
+  }
+
+  /**
+  * Adds every pattern starting with the classes placed so far whose counts
+  * can still satisfy the policy.
+  *
+  * @param pattern The classes of the positions placed so far
+  * @param counts The number of positions of each class placed so far
+  * @param pos The position to fill in
+  */
+  private void listPatterns(byte[] pattern, int[] counts, int pos) {
+    if(pos == length){
+      patterns.add(pattern.clone());
+      return;
+    }
+    for(int k = 0; k < counts.length; k++){
+      if(members[k].length == 0){
+        continue;
+      }
+      pattern[pos] = (byte) k;
+      counts[k]++;
+      if(policy.countsPossible(counts, pos+1)){
+        listPatterns(pattern, counts, pos+1);
+      }
+      counts[k]--;
+    }
+  }
+
+  /**
+  * @return The number of admissible class patterns
+  */
+  public int patterns() {
+    return patterns.size();
+  }
+
+  /**
+  * @return Every admissible pattern as a mask (see MaskAttack), fewest candidates first
+  */
+  public List<String> masks() {
+    List<byte[]> order = new ArrayList<byte[]>(patterns);
+    order.sort((a, b) -> Long.compare(candidates(a), candidates(b)));
+    List<String> masks = new ArrayList<String>(order.size());
+    for(byte[] pattern : order){
+      StringBuilder mask = new StringBuilder(2*length);
+      for(byte k : pattern){
+        mask.append('?').append(Character.toLowerCase(policy.name(k).charAt(0)));
+      }
+      masks.add(mask.toString());
+    }
+    return masks;
+  }
+
+  /**
+  * @return The number of candidates fitting an admissible pattern
+  */
+  public long candidates() {
+    long total = 0;
+    for(byte[] pattern : patterns){
+      total += candidates(pattern);
+    }
+    return total;
+  }
+
+  /**
+  * @return The number of strings of a password's length over the alphabet
+  */
+  public long keyspace() {
+    long total = 1;
+    for(int i = 0; i < length; i++){
+      total *= policy.alphabet().radix();
+    }
+    return total;
+  }
+
+  private long candidates(byte[] pattern) {
+    long total = 1;
+    for(byte k : pattern){
+      total *= members[k].length;
+    }
+    return total;
+  }
+
+  /**
+  * @param pattern A class pattern
+  * @return The pattern named by the first letter of each class's name, e.g. LLNSS
+  */
+  private String name(byte[] pattern) {
+    StringBuilder name = new StringBuilder(length);
+    for(byte k : pattern){
+      name.append(Character.toUpperCase(policy.name(k).charAt(0)));
+    }
+    return name.toString();
+  }
+
+  /**
+  * Fills in every admissible pattern in turn.
+  */
+  public void run() {
+    startTime = System.nanoTime();
+    for(byte[] pattern : patterns){
+      long start = System.nanoTime();
+      long valid = fill(pattern);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.println("  " + name(pattern) + ": " + candidates(pattern) + " candidates, " + valid
+        + " valid, " + Math.round(candidates(pattern) / seconds) + " candidates/s");
+    }
+  }
+
+  /**
+  * Validates every candidate fitting a pattern, storing the valid ones.
+  * Candidates are counted like an odometer, last position fastest.
+  *
+  * @param pattern The class pattern
+  * @return The number of valid passwords fitting the pattern
+  */
+  private long fill(byte[] pattern) {
+    int[] digit = new int[length]; //index into the position's class of each character
+    StringBuilder attempt = new StringBuilder(length);
+    for(int i = 0; i < length; i++){
+      attempt.append(members[pattern[i]][0]);
+    }
+    long valid = 0;
+    while(true){
+      if(pw_check.validatePassword(attempt)){
+        double estimatedTime = ((System.nanoTime() - startTime)/1000000.0); //calculate time to find the password
+        pw_check.storePass(attempt.toString(), estimatedTime);
+        valid++;
+      }
+      int pos = length-1;
+      while(pos >= 0 && ++digit[pos] == members[pattern[pos]].length){
+        digit[pos] = 0;
+        attempt.setCharAt(pos, members[pattern[pos]][0]);
+        pos--;
+      }
+      if(pos < 0){ //every candidate tried
+        return valid;
+      }
+      attempt.setCharAt(pos, members[pattern[pos]][digit[pos]]);
+    }
+  }
+}
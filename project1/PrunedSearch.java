@@ -0,0 +1,202 @@
+import dataStructures.*;
+
+/**
+* Depth-first version of pw_check.genPasswords() that prunes a prefix as soon
+* as no password starting with it can be valid, instead of validating only
+* once every character is placed. It follows pw_check.policy, so passwords
+* of other lengths and character classes are searched the same way.
+*
+* For every depth the search keeps the number of characters of each class
+* placed so far and the start positions of the dictionary words still being
+* matched. A prefix is cut when the policy says its class counts can't be
+* completed (see PasswordPolicy.countsPossible), or when a dictionary word
+* ends at the character just placed.
+*
+* @author Craig Mazzotta
+*/
+public class PrunedSearch {
+  private final PasswordPolicy policy; //what a valid password looks like
+  private final Alphabet characters; //valid characters for a password
+  private final int length; //length of a password
+  private final int R; //number of valid characters
+  private final FrozenDLB dictionary; //words a password can't contain
+  private final char[] password; //the prefix being searched
+  private final char[] word; //prefix with substitutions made (see PasswordPolicy.readings)
+  private final int[][] counts; //characters of each class in the first d characters
+  private final int[] live; //bit s is set if word[s..d) is a prefix of a word
+  private final int[] ambiguous; //positions of characters with several readings in the window being looked up
+  private final char[][] options; //readings of the character at each ambiguous position
+  private final int[] choice; //reading currently in word for each ambiguous position
+  private final char[] reading; //first reading of each alphabet index, BREAK if no word contains it
+  private long startTime; //start of the search
+  private long visited; //number of prefixes placed
+  private double pruned; //number of prefixes skipped because an ancestor was cut, a double since it can pass a long
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @param dictionary The frozen DLB trie of words a password can't contain
+  */
+  public PrunedSearch(PasswordPolicy policy, FrozenDLB dictionary) {
+    this.policy = policy;
+    this.characters = policy.alphabet();
+    this.length = policy.length();
+    this.R = characters.radix();
+    this.dictionary = dictionary;
+    password = new char[length];
+    word = new char[length];
+    counts = new int[length+1][policy.classes()];
+    live = new int[length+1];
+    ambiguous = new int[length];
+    options = new char[length][];
+    choice = new int[length];
+    reading = PasswordValidator.firstReadings(policy, dictionary);
+  }
+
+  /**
+  * Generates all valid passwords, storing them with pw_check.storePass(),
+  * then reports how much of the keyspace was pruned.
+  */
+  public static void genPasswords() {
+    PrunedSearch search = new PrunedSearch(pw_check.policy, pw_check.dictionary);
+    search.run();
+    double total = search.visited + search.pruned;
+    System.out.println("Visited " + search.visited + " of " + String.format("%.0f", total) + " prefixes, pruned "
+      + String.format("%.0f", search.pruned) + " (" + (100.0 * search.pruned / total) + "%)");
+  }
+
+  /**
+  * Runs the search from the empty prefix.
+  */
+  public void run() {
+    visited = 0;
+    pruned = 0;
+    startTime = System.nanoTime();
+    search(0);
+  }
+
+  /**
+  * Searches one shard of the keyspace: the passwords starting with the
+  * character at the given alphabet index.
+  *
+  * @param first The alphabet index of the first character
+  * @param startTime The System.nanoTime() the times of the passwords are measured from
+  */
+  public void runShard(int first, long startTime) {
+    this.startTime = startTime;
+    place(0, first);
+  }
+
+  /**
+  * Places every character at the given position, recursing into the
+  * prefixes that can still lead to a valid password.
+  *
+  * @param pos The position to fill in
+  */
+  private void search(int pos) {
+    for(int i = 0; i < R; i++){
+      place(pos, i);
+    }
+  }
+
+  /**
+  * Places one character, then stores the password, cuts the prefix, or
+  * searches the positions after it.
+  *
+  * @param pos The position to fill in
+  * @param i The alphabet index of the character to place
+  */
+  private void place(int pos, int i) {
+    int[] after = counts[pos+1];
+    password[pos] = characters.toChar(i);
+    word[pos] = reading[i];
+    System.arraycopy(counts[pos], 0, after, 0, after.length);
+    after[policy.classOf(i)]++;
+    visited++;
+
+    if(!policy.countsPossible(after, pos+1) || wordEndsAt(pos)){ //no password starts with this prefix
+      pruned += subtreeSize(length-pos-1);
+    } else if(pos+1 == length){
+      double estimatedTime = ((System.nanoTime() - startTime)/1000000.0); //calculate time to find the password
+      pw_check.storePass(new String(password), estimatedTime);
+    } else {
+      search(pos+1);
+    }
+  }
+
+  /**
+  * Extends every word still being matched by the character at pos, and
+  * starts a new one there. Words that can no longer match are dropped.
+  *
+  * @param pos The position of the character just placed
+  * @return True if a dictionary word ends at pos
+  */
+  private boolean wordEndsAt(int pos) {
+    live[pos+1] = 0;
+    if(word[pos] == PasswordValidator.BREAK){ //no word can continue through this character
+      return false;
+    }
+    int starts = live[pos] | (1 << pos);
+    for(int start = 0; start <= pos; start++){
+      if((starts & (1 << start)) == 0){
+        continue;
+      }
+      int result = lookup(start, pos+1);
+      if((result & 2) != 0){ //string in question is a word
+        return true;
+      } else if(result != 0){ //still a prefix of a word
+        live[pos+1] |= 1 << start;
+      }
+    }
+    return false;
+  }
+
+  /**
+  * Searches the dictionary for word[from..to), trying every combination of
+  * readings for the ambiguous characters in it (e.g. 'i' and 'l' for every 1).
+  *
+  * @return The DLB search results for each reading or'd together:
+  *     bit 0 set if it's a prefix, bit 1 set if it's a word
+  */
+  private int lookup(int from, int to) {
+    int numAmbiguous = 0;
+    for(int i = from; i < to; i++){
+      int index = characters.toIndex(password[i]);
+      char[] readings = policy.readings(index);
+      word[i] = reading[index];
+      if(readings.length > 1){
+        options[numAmbiguous] = readings;
+        choice[numAmbiguous] = 0;
+        ambiguous[numAmbiguous++] = i;
+      }
+    }
+    int result = 0;
+    while(true){
+      result |= dictionary.search(word, from, to);
+      int j = 0; //advance to the next combination, first position fastest
+      while(j < numAmbiguous && ++choice[j] == options[j].length){
+        choice[j] = 0;
+        word[ambiguous[j]] = options[j][0];
+        j++;
+      }
+      if(j == numAmbiguous){ //every combination tried
+        return result;
+      }
+      word[ambiguous[j]] = options[j][choice[j]];
+    }
+  }
+
+  /**
+  * @param remaining The number of positions left to fill
+  * @return The number of prefixes below a prefix with remaining positions left,
+  *     a double because R^remaining passes a long for long policies
+  */
+  private double subtreeSize(int remaining) {
+    double size = 0;
+    double level = 1;
+    for(int i = 0; i < remaining; i++){
+      level *= R;
+      size += level;
+    }
+    return size;
+  }
+}
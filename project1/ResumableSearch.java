@@ -0,0 +1,52 @@
+import java.io.*;
+import dataStructures.*;
+
+/**
+* Checkpointed version of PrunedSearch for long runs of -find.
+*
+* The keyspace is split into shards by the first character of the password.
+* After each shard the output is flushed and a Checkpoint saved, so when a
+* run is interrupted the next "-find -resume" truncates all_passwords.txt to
+* the end of the last finished shard (dropping any partial trailing output),
+* skips the finished shards, and carries on. Times continue from where the
+* interrupted run stopped.
+*
+* @author Craig Mazzotta
+*/
+public class ResumableSearch {
+  public static final File CHECKPOINT = new File("all_passwords.ckpt"); //progress of the run
+
+  /**
+  * Generates all valid passwords, resuming from the checkpoint of an
+  * interrupted run if there is one. Opens the output itself, so it must be
+  * called instead of pw_check.openOutput(); close it with closeOutput() and
+  * delete CHECKPOINT once the run is done.
+  */
+  public static void genPasswords() {
+    int R = pw_check.characters.radix();
+    File passwords = new File("all_passwords.txt");
+    Checkpoint checkpoint = Checkpoint.load(CHECKPOINT, pw_check.policy.toString());
+    if(checkpoint.offset() > passwords.length()){ //the output was replaced since the checkpoint
+      System.out.println("all_passwords.txt is shorter than " + CHECKPOINT + " records, starting over");
+      checkpoint = checkpoint.restart();
+    }
+    if(checkpoint.shard() > 0){
+      System.out.println("Resuming at shard " + (checkpoint.shard()+1) + " of " + R);
+    }
+    pw_check.openOutput(checkpoint.offset());
+
+    PrunedSearch search = new PrunedSearch(pw_check.policy, pw_check.dictionary);
+    long startTime = System.nanoTime() - (long) (checkpoint.elapsed() * 1000000); //so times carry on from the interrupted run
+    for(int shard = checkpoint.shard(); shard < R; shard++){
+      search.runShard(shard, startTime);
+      try {
+        pw_check.output.flush();
+        checkpoint.save(shard+1, passwords.length(), (System.nanoTime() - startTime)/1000000.0);
+      }
+      catch (IOException e) {
+        System.out.println("Unable to save progress to " + CHECKPOINT + ": " + e.getMessage());
+        System.exit(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.List;
+import dataStructures.*;
+
+/**
+* Dictionary-plus-rules attack: every rule applied to every word of a
+* wordlist, one rule after another.
+*
+* Rules are written in a subset of hashcat's rule language, one rule per
+* line, each a sequence of functions applied left to right:
+*   :    do nothing           l    lowercase
+*   r    reverse              d    duplicate
+*   [    delete first         ]    delete last
+*   $X   append X             ^X   prepend X
+*   'N   truncate to N        DN   delete position N
+*   iNX  insert X at N        oNX  overwrite position N with X
+*   sXY  replace every X by Y @X   delete every X
+* where N is a position written 0-9 then A-Z (10-35). Spaces between
+* functions are ignored. A function that needs a position past the end of
+* the word rejects the guess, as hashcat does.
+*
+* The default rules keep the first 1 to length-1 letters of a word and
+* append every string of the policy's non-letter characters that makes up
+* the length, longest kept part first. Substituting numbers or symbols into
+* a whole word is left out, since the policy forbids those passwords anyway.
+*
+* @author Craig Mazzotta
+*/
+public class RuleAttack implements AttackEngine.Strategy {
+  private final String[] words; //base words
+  private final char[][] rules; //rules, spaces removed
+
+  /**
+  * @param words The wordlist
+  * @param rules The rules, in the order to apply them
+  * @throws IllegalArgumentException If a rule is malformed
+  */
+  public RuleAttack(List<String> words, List<String> rules) {
+    this.words = words.toArray(new String[0]);
+    this.rules = new char[rules.size()][];
+    StringBuilder test = new StringBuilder();
+    for(int r = 0; r < this.rules.length; r++){
+      this.rules[r] = rules.get(r).replace(" ", "").toCharArray();
+      test.setLength(0);
+      apply(this.rules[r], test, true); //throws if the rule is malformed
+    }
+  }
+
+  /**
+  * @param policy The policy passwords must satisfy
+  * @return The default rules (see the class comment)
+  */
+  public static List<String> defaultRules(PasswordPolicy policy) {
+    Alphabet characters = policy.alphabet();
+    StringBuilder others = new StringBuilder(); //characters that aren't letters
+    for(int i = 0; i < characters.radix(); i++){
+      if(!Character.isLetter(characters.toChar(i))){
+        others.append(characters.toChar(i));
+      }
+    }
+    List<String> rules = new ArrayList<String>();
+    for(int keep = policy.length()-1; keep >= 1; keep--){
+      appendAll(rules, "'" + positionName(keep), others.toString(), policy.length() - keep);
+    }
+    return rules;
+  }
+
+  // adds rule followed by every sequence of n appends of characters from chars
+  private static void appendAll(List<String> rules, String rule, String chars, int n) {
+    if(n == 0){
+      rules.add(rule);
+      return;
+    }
+    for(int i = 0; i < chars.length(); i++){
+      appendAll(rules, rule + "$" + chars.charAt(i), chars, n-1);
+    }
+  }
+
+  private static char positionName(int n) {
+    return (char) (n < 10 ? '0' + n : 'A' + n - 10);
+  }
+
+  @Override
+  public String name() {
+    return "rules";
+  }
+
+  @Override
+  public long size() {
+    return (long) words.length * rules.length;
+  }
+
+  @Override
+  public boolean guess(long g, StringBuilder out) {
+    out.setLength(0);
+    out.append(words[(int) (g % words.length)]);
+    return apply(rules[(int) (g / words.length)], out, false);
+  }
+
+  /**
+  * Applies a rule to a word.
+  *
+  * @param rule The functions of the rule
+  * @param word The word, changed in place
+  * @param check True to only check the rule's syntax, ignoring the word
+  * @return False if the rule rejects the word
+  * @throws IllegalArgumentException If the rule is malformed
+  */
+  private static boolean apply(char[] rule, StringBuilder word, boolean check) {
+    int i = 0;
+    while(i < rule.length){
+      char f = rule[i++];
+      int args = f == 's' || f == 'i' || f == 'o' ? 2 : f == '$' || f == '^' || f == '\'' || f == 'D' || f == '@' ? 1 : 0;
+      if(i + args > rule.length){
+        throw new IllegalArgumentException("Rule \"" + new String(rule) + "\": '" + f + "' is missing its arguments");
+      }
+      int n = args > 0 ? position(rule[i]) : 0; //the first argument as a position
+      boolean fits = check || n <= word.length();
+      switch(f){
+        case ':':
+          break;
+        case 'l':
+          for(int j = 0; j < word.length(); j++){
+            word.setCharAt(j, Character.toLowerCase(word.charAt(j)));
+          }
+          break;
+        case 'r':
+          word.reverse();
+          break;
+        case 'd':
+          word.append(word, 0, word.length());
+          break;
+        case '[':
+          if(word.length() > 0){
+            word.deleteCharAt(0);
+          }
+          break;
+        case ']':
+          if(word.length() > 0){
+            word.setLength(word.length()-1);
+          }
+          break;
+        case '$':
+          word.append(rule[i]);
+          break;
+        case '^':
+          word.insert(0, rule[i]);
+          break;
+        case '\'':
+          checkPosition(rule, n);
+          if(!fits){
+            return false;
+          }
+          word.setLength(Math.min(n, word.length()));
+          break;
+        case 'D':
+          checkPosition(rule, n);
+          if(!check){
+            if(n >= word.length()){
+              return false;
+            }
+            word.deleteCharAt(n);
+          }
+          break;
+        case 'i':
+          checkPosition(rule, n);
+          if(!fits){
+            return false;
+          }
+          if(!check){
+            word.insert(n, rule[i+1]);
+          }
+          break;
+        case 'o':
+          checkPosition(rule, n);
+          if(!check){
+            if(n >= word.length()){
+              return false;
+            }
+            word.setCharAt(n, rule[i+1]);
+          }
+          break;
+        case 's':
+          for(int j = 0; j < word.length(); j++){
+            if(word.charAt(j) == rule[i]){
+              word.setCharAt(j, rule[i+1]);
+            }
+          }
+          break;
+        case '@':
+          for(int j = word.length()-1; j >= 0; j--){
+            if(word.charAt(j) == rule[i]){
+              word.deleteCharAt(j);
+            }
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Rule \"" + new String(rule) + "\": unknown function '" + f + "'");
+      }
+      i += args;
+    }
+    return true;
+  }
+
+  // -1 for a character that isn't a position
+  private static int position(char c) {
+    return c >= '0' && c <= '9' ? c - '0' : c >= 'A' && c <= 'Z' ? c - 'A' + 10 : -1;
+  }
+
+  private static void checkPosition(char[] rule, int n) {
+    if(n < 0){
+      throw new IllegalArgumentException("Rule \"" + new String(rule) + "\": bad position");
+    }
+  }
+}
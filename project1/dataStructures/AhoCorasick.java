@@ -0,0 +1,192 @@
+package dataStructures;
+import java.util.Arrays;
+
+/**
+ *  The AhoCorasick class is a multi-pattern string matcher. The patterns are
+ *  compiled into a deterministic automaton over an Alphabet, which reports
+ *  whether any pattern occurs in a text in one left-to-right pass, one table
+ *  lookup per character, however many patterns there are.
+ *
+ *  Patterns are added to a trie of goto transitions. compile() then computes
+ *  the failure link of every state breadth first (the state of the longest
+ *  proper suffix of its string that is also in the trie) and uses the links
+ *  to fill in every missing transition, so matching never backtracks.
+ *  A state is accepting if a pattern ends at it or at any state on its chain
+ *  of failure links.
+ *
+ *  addSubstituted() adds every spelling of a word in which letters are
+ *  replaced by their substitutes, so substitutions like "7" for "t" become
+ *  ordinary transitions of the automaton.
+ *
+ *  Used by pw_check.java to find dictionary words in candidate passwords.
+ *
+ * @author Craig Mazzotta
+ */
+public class AhoCorasick {
+    private static final int ROOT = 0;
+
+    private final Alphabet alphabet;  // characters of patterns and texts
+    private final int R;              // radix of the alphabet
+    private int[] next;               // next[s*R + c] = transition from state s on index c, -1 if none yet
+    private boolean[] accept;         // accept[s] = a pattern ends at state s
+    private int states;               // number of states
+    private boolean compiled;         // no patterns can be added once compiled
+
+    /**
+     * Initializes an automaton with no patterns.
+     * @param alphabet the characters of patterns and texts
+     */
+    public AhoCorasick(Alphabet alphabet) {
+        this.alphabet = alphabet;
+        this.R = alphabet.radix();
+        next = new int[16 * R];
+        accept = new boolean[16];
+        Arrays.fill(next, -1);
+        states = 1;
+    }
+
+    /**
+     * Adds a pattern.
+     * @param pattern the pattern
+     * @throws IllegalArgumentException if pattern contains a character outside the alphabet
+     * @throws IllegalStateException if the automaton has been compiled
+     */
+    public void add(CharSequence pattern) {
+        if (compiled) throw new IllegalStateException("Automaton already compiled");
+        int s = ROOT;
+        for (int d = 0; d < pattern.length(); d++) {
+            int c = alphabet.toIndex(pattern.charAt(d));
+            int t = next[s * R + c];
+            if (t == -1) {
+                t = newState();  // may replace next, so index it only after the call
+                next[s * R + c] = t;
+            }
+            s = t;
+        }
+        accept[s] = true;
+    }
+
+    /**
+     * Adds a word and every spelling of it in which some of its letters are
+     * replaced by their substitutes. letters[k] may be replaced by substitutes[k];
+     * a letter can be listed more than once to give it several substitutes,
+     * and several letters can share a substitute.
+     * @param word the word
+     * @param letters the letters that can be substituted
+     * @param substitutes the substitute for each letter
+     */
+    public void addSubstituted(String word, char[] letters, char[] substitutes) {
+        addSubstituted(word.toCharArray(), 0, letters, substitutes);
+    }
+
+    private void addSubstituted(char[] word, int d, char[] letters, char[] substitutes) {
+        if (d == word.length) {
+            add(new String(word));
+            return;
+        }
+        addSubstituted(word, d + 1, letters, substitutes);
+        char letter = word[d];
+        for (int k = 0; k < letters.length; k++) {
+            if (letters[k] == letter) {
+                word[d] = substitutes[k];
+                addSubstituted(word, d + 1, letters, substitutes);
+                word[d] = letter;
+            }
+        }
+    }
+
+    private int newState() {
+        if (states == accept.length) {
+            next = Arrays.copyOf(next, 2 * states * R);
+            Arrays.fill(next, states * R, next.length, -1);
+            accept = Arrays.copyOf(accept, 2 * states);
+        }
+        return states++;
+    }
+
+    /**
+     * Computes failure links and fills in every transition.
+     * Must be called after the last pattern is added and before matching.
+     */
+    public void compile() {
+        if (compiled) return;
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+        for (int c = 0; c < R; c++) {
+            int t = next[ROOT * R + c];
+            if (t == -1) {
+                next[ROOT * R + c] = ROOT;
+            }
+            else {
+                fail[t] = ROOT;
+                queue[tail++] = t;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            accept[s] |= accept[fail[s]];
+            for (int c = 0; c < R; c++) {
+                int t = next[s * R + c];
+                if (t == -1) {
+                    next[s * R + c] = next[fail[s] * R + c];
+                }
+                else {
+                    fail[t] = next[fail[s] * R + c];
+                    queue[tail++] = t;
+                }
+            }
+        }
+        next = Arrays.copyOf(next, states * R);
+        accept = Arrays.copyOf(accept, states);
+        compiled = true;
+    }
+
+    /**
+     * @return the start state
+     */
+    public int start() {
+        return ROOT;
+    }
+
+    /**
+     * @return the number of states in the automaton
+     */
+    public int size() {
+        return states;
+    }
+
+    /**
+     * Returns the state after reading a character, given by its alphabet index.
+     * @param state the current state
+     * @param index the alphabet index of the character read
+     * @return the next state
+     */
+    public int next(int state, int index) {
+        return next[state * R + index];
+    }
+
+    /**
+     * @param state a state
+     * @return true if some pattern ends at the last character read to reach state
+     */
+    public boolean isMatch(int state) {
+        return accept[state];
+    }
+
+    /**
+     * Does any pattern occur in text[from..to)?
+     * @param text the characters to search, all in the alphabet
+     * @param from the index of the first character
+     * @param to one past the index of the last character
+     * @return true if some pattern occurs in the text
+     */
+    public boolean find(char[] text, int from, int to) {
+        int s = ROOT;
+        for (int i = from; i < to; i++) {
+            s = next[s * R + alphabet.toIndex(text[i])];
+            if (accept[s]) return true;
+        }
+        return false;
+    }
+}
@@ -7,6 +7,13 @@ package dataStructures;
 *  The class is used in pw_check.java and RWay.java to declare
 *  valid characters to be used in a passwords
 *
+*  An alphabet can also be made of several groups of characters (e.g. the
+*  letters, numbers and symbols of a PasswordPolicy), numbered in the order
+*  they're given. ASCII characters are looked up in two 128-entry tables, one
+*  of indices and one of groups, so indexOf() and group() are a single load
+*  from a table that stays in cache, and classify() finds the group of every
+*  character of a password in one pass.
+*
 *  Class provided by Algorithms, 4th Ed. by Robert Sedgewick and Kevin Wayne
 *  Copyright 2002-2016, Robert Sedgewick and Kevin Wayne.
 */
@@ -19,6 +26,10 @@ public class Alphabet {
     private char[] alphabet;     // the characters in the alphabet
     private int[] inverse;       // indices
     private final int R;         // the radix of the alphabet
+    private final int[] asciiIndex;  // index of each ASCII character, -1 if not in the alphabet
+    private final byte[] asciiGroup; // group of each ASCII character, -1 if not in the alphabet
+    private final byte[] groupOf;    // group of each index
+    private final int groups;        // the number of groups
 
     /**
      * Initializes a new alphabet from the given set of characters.
@@ -26,6 +37,22 @@ public class Alphabet {
      * @param alpha the set of characters
      */
     public Alphabet(String alpha) {
+        this(new String[] { alpha });
+    }
+
+    /**
+     * Initializes a new alphabet from groups of characters; the alphabet is
+     * the groups' characters in the order given.
+     *
+     * @param groupChars the characters of each group, at most 127 groups
+     * @throws IllegalArgumentException if a character is repeated or there
+     *         are too many groups
+     */
+    public Alphabet(String... groupChars) {
+        if (groupChars.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Illegal alphabet: more than " + Byte.MAX_VALUE + " groups");
+        String alpha = String.join("", groupChars);
+
         // check that alphabet contains no duplicate chars
         boolean[] unicode = new boolean[Character.MAX_VALUE];
         for (int i = 0; i < alpha.length(); i++) {
@@ -44,6 +71,18 @@ public class Alphabet {
         // can't use char since R can be as big as 65,536
         for (int c = 0; c < R; c++)
             inverse[alphabet[c]] = c;
+
+        groups = groupChars.length;
+        groupOf = new byte[R];
+        for (int g = 0, index = 0; g < groups; g++)
+            for (int i = 0; i < groupChars[g].length(); i++)
+                groupOf[index++] = (byte) g;
+        asciiIndex = new int[128];
+        asciiGroup = new byte[128];
+        for (int c = 0; c < 128; c++) {
+            asciiIndex[c] = inverse[c];
+            asciiGroup[c] = inverse[c] == -1 ? -1 : groupOf[inverse[c]];
+        }
     }
 
     /**
@@ -86,12 +125,83 @@ public class Alphabet {
      * @throws IllegalArgumentException unless {@code c} is a character in this alphabet
      */
     public int toIndex(char c) {
+        if (c < 128 && asciiIndex[c] != -1) {
+            return asciiIndex[c];
+        }
         if (c >= inverse.length || inverse[c] == -1) {
             throw new IllegalArgumentException("Character " + c + " not in alphabet");
         }
         return inverse[c];
     }
 
+    /**
+     * Returns the index corresponding to the argument character, without
+     * throwing for a character outside the alphabet.
+     *
+     * @param  c the character
+     * @return the index corresponding to the character {@code c}, or -1 if
+     *         {@code c} is not in this alphabet
+     */
+    public int indexOf(char c) {
+        if (c < 128) {
+            return asciiIndex[c];
+        }
+        return c < inverse.length ? inverse[c] : -1;
+    }
+
+    /**
+     * Returns the number of groups the alphabet was made of.
+     *
+     * @return the number of groups, 1 for an alphabet made from one string
+     */
+    public int groups() {
+        return groups;
+    }
+
+    /**
+     * Returns the group of the character at the argument index.
+     *
+     * @param  index the index
+     * @return the group of the character at index {@code index}
+     * @throws IndexOutOfBoundsException unless {@code 0 <= index < R}
+     */
+    public int groupOf(int index) {
+        return groupOf[index];
+    }
+
+    /**
+     * Returns the group of the argument character.
+     *
+     * @param  c the character
+     * @return the group of {@code c}, or -1 if it is not in this alphabet
+     */
+    public int group(char c) {
+        if (c < 128) {
+            return asciiGroup[c];
+        }
+        int index = indexOf(c);
+        return index == -1 ? -1 : groupOf[index];
+    }
+
+    /**
+     * Finds the group of each of the argument characters.
+     *
+     * @param  chars the characters
+     * @param  groups receives the group of each character, -1 for a character
+     *         not in this alphabet; at least as long as {@code chars}
+     * @return {@code true} if every character is in this alphabet
+     */
+    public boolean classify(char[] chars, byte[] groups) {
+        int outside = 0;  // or of the groups; negative once any is -1
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            byte g = c < 128 ? asciiGroup[c] : (byte) group(c);
+            groups[i] = g;
+            outside |= g;
+        }
+        return outside >= 0;
+    }
+
     /**
      * Returns the indices corresponding to the argument characters.
      *
@@ -0,0 +1,127 @@
+package dataStructures;
+
+/**
+ *  The BloomFilter class is a compact set of strings that answers
+ *  "definitely not present" or "maybe present" in a few bit probes.
+ *  It never gives a false negative; a false positive happens with a
+ *  probability that falls as more bits are spent per key.
+ *
+ *  Keys are hashed one character at a time with extend(), starting from
+ *  SEED, so a caller growing a string one character at a time (like a
+ *  window over a password) keeps one running hash instead of rehashing
+ *  every substring.
+ *
+ *  The filter is blocked: all k bits of a key are in one 64-bit word, picked
+ *  by the top 24 bits of the hash, with the bit positions taken 6 bits at a
+ *  time from bits 10-33, so the two never share hash bits. A lookup is then one load and one compare. This costs
+ *  a little accuracy against spreading the bits over the whole filter, so
+ *  keys should get more room than the textbook figure; at 32 bits per key
+ *  and 4 bits set per key about 1 lookup in 1000-2000 is a false positive.
+ *
+ * @author Craig Mazzotta
+ */
+public class BloomFilter {
+    public static final long SEED = 0xcbf29ce484222325L;  // hash of the empty string
+    private static final long PRIME = 0x100000001b3L;     // FNV-1a multiplier
+
+    private final long[] bits;   // the filter
+    private final int mask;      // number of words - 1
+    private final int k;         // bits set per key, at most 4
+    private int n;               // number of keys added
+
+    /**
+     * Initializes an empty filter.
+     * @param expected the number of keys that will be added
+     * @param bitsPerKey the bits to spend per key
+     * @throws IllegalArgumentException if expected or bitsPerKey is not positive
+     */
+    public BloomFilter(int expected, int bitsPerKey) {
+        if (expected < 1 || bitsPerKey < 1)
+            throw new IllegalArgumentException("Expected keys and bits per key must be positive");
+        long size = Math.max(64, Long.highestOneBit((long) expected * bitsPerKey - 1) << 1);
+        if (size > 1L << 30)
+            throw new IllegalArgumentException("Filter too large");
+        bits = new long[(int) (size >>> 6)];
+        mask = bits.length - 1;
+        k = Math.min(4, Math.max(1, (int) Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    /**
+     * Extends the hash of a string by one character.
+     * @param hash the hash of the string so far, SEED for the empty string
+     * @param c the next character
+     * @return the hash of the string followed by c
+     */
+    public static long extend(long hash, char c) {
+        return (hash ^ c) * PRIME;
+    }
+
+    /**
+     * @param key the key
+     * @return the hash of key
+     */
+    public static long hash(CharSequence key) {
+        long hash = SEED;
+        for (int i = 0; i < key.length(); i++)
+            hash = extend(hash, key.charAt(i));
+        return hash;
+    }
+
+    /**
+     * Adds a key to the filter.
+     * @param key the key
+     */
+    public void add(CharSequence key) {
+        long hash = mix(hash(key));
+        bits[block(hash)] |= pattern(hash);
+        n++;
+    }
+
+    /**
+     * Might the filter contain the key with the given hash?
+     * @param hash the key's hash, from hash() or extend()
+     * @return false if the key was definitely not added, true if it may have been
+     */
+    public boolean mightContain(long hash) {
+        hash = mix(hash);
+        long pattern = pattern(hash);
+        return (bits[block(hash)] & pattern) == pattern;
+    }
+
+    /**
+     * Might the filter contain the given key?
+     * @param key the key
+     * @return false if the key was definitely not added, true if it may have been
+     */
+    public boolean mightContain(CharSequence key) {
+        return mightContain(hash(key));
+    }
+
+    /**
+     * @return the number of keys added
+     */
+    public int size() {
+        return n;
+    }
+
+    // the word holding a key's bits, from the hash's top 24 bits (the filter has at most 2^24 words)
+    private int block(long hash) {
+        return (int) (hash >>> 40) & mask;
+    }
+
+    // the k bits of a key within its word, from bits 10-33 of the hash
+    private long pattern(long hash) {
+        long pattern = 0;
+        for (int i = 0; i < k; i++)
+            pattern |= 1L << (hash >>> (10 + 6 * i));
+        return pattern;
+    }
+
+    // spreads the low-entropy FNV bits over the whole word before splitting it
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
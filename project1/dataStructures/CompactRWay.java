@@ -0,0 +1,300 @@
+package dataStructures;
+import java.util.Arrays;
+import dataStructures.Queue;
+import dataStructures.Alphabet;
+/**
+ *  The CompactRWay class is a memory-compact version of RWay for string
+ *  keys and primitive double values. It supports the same put, get,
+ *  contains, delete, size, keysWithPrefix and longestPrefixOf methods.
+ *
+ *  Instead of a Node object with an R-slot array of references, every node
+ *  is an int index into parallel arrays:
+ *    bits[x]  a bitmap with bit c set if x has a child for alphabet index c
+ *    base[x]  where the children of x start in kids[]
+ *    vals[x]  the value of the key ending at x, or NaN if none does
+ *  The children of a node are stored densely in kids[], in alphabet order,
+ *  so the child for index c is found by counting the bits below c. A node's
+ *  block of kids[] doubles in capacity when full, like a dynamic array.
+ *
+ *  Values are primitive doubles, so nothing is boxed; NaN marks a missing
+ *  key, which means NaN can't be stored (putting NaN deletes the key, as
+ *  putting null does in RWay).
+ *
+ *  Alphabets can have at most 64 characters so a bitmap fits in a long.
+ *
+ * @author Craig Mazzotta
+ */
+
+public class CompactRWay {
+
+    public static final Alphabet validChars = new Alphabet("abcdefghijklmnopqrstuvwxyz0123456789!@$^_*");
+    private static final int ROOT = 0;
+
+    private final Alphabet alphabet;  // characters of a key
+    private final int R;              // radix of the alphabet
+
+    private long[] bits = new long[16];     // children present, one bit per alphabet index
+    private int[] base = new int[16];       // start of each node's children in kids
+    private double[] vals = new double[16]; // value of the key ending at each node, NaN if none
+    private int nodes;                      // number of nodes in use
+    private int[] kids = new int[16];       // child node indices, in blocks
+    private int used;                       // number of slots of kids in use
+    private int n;                          // number of keys in trie
+
+    /**
+     * Initializes an empty string symbol table over the password characters.
+     */
+    public CompactRWay() {
+        this(validChars);
+    }
+
+    /**
+     * Initializes an empty string symbol table.
+     * @param alphabet the characters keys are made of
+     * @throws IllegalArgumentException if the alphabet has more than 64 characters
+     */
+    public CompactRWay(Alphabet alphabet) {
+        if (alphabet.radix() > 64)
+            throw new IllegalArgumentException("CompactRWay supports at most 64 characters");
+        this.alphabet = alphabet;
+        this.R = alphabet.radix();
+        newNode();
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *     and NaN if the key is not in the symbol table
+     * @throws NullPointerException if key is null
+     */
+    public double get(String key) {
+        int x = find(key, key.length());
+        if (x == -1) return Double.NaN;
+        return vals[x];
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return true if this symbol table contains key and
+     *      false otherwise
+     * @throws NullPointerException if key is null
+     */
+    public boolean contains(String key) {
+        return !Double.isNaN(get(key));
+    }
+
+    // node reached by the first d characters of key, or -1 if there is none
+    private int find(String key, int d) {
+        int x = ROOT;
+        for (int i = 0; i < d && x != -1; i++) {
+            char c = key.charAt(i);
+            if (!alphabet.contains(c)) return -1;
+            x = child(x, alphabet.toIndex(c));
+        }
+        return x;
+    }
+
+    // child of x for alphabet index c, or -1 if there is none
+    private int child(int x, int c) {
+        long b = bits[x];
+        if ((b & (1L << c)) == 0) return -1;
+        return kids[base[x] + Long.bitCount(b & ((1L << c) - 1))];
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table, overwriting the old value
+     * with the new value if the key is already in the symbol table.
+     * If the value is NaN, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @throws NullPointerException if key is null
+     * @throws IllegalArgumentException if key contains a character outside the alphabet
+     */
+    public void put(String key, double val) {
+        if (Double.isNaN(val)) {
+            delete(key);
+            return;
+        }
+        int x = ROOT;
+        for (int d = 0; d < key.length(); d++) {
+            int c = alphabet.toIndex(key.charAt(d));
+            int next = child(x, c);
+            if (next == -1) next = addChild(x, c);
+            x = next;
+        }
+        if (Double.isNaN(vals[x])) n++;
+        vals[x] = val;
+    }
+
+    // adds a new child of x for alphabet index c, returning it
+    private int addChild(int x, int c) {
+        int child = newNode();
+        long b = bits[x];
+        int count = Long.bitCount(b);
+        if (count == capacity(count)) { // block is full, move to a bigger one
+            int size = capacity(count + 1);
+            if (used + size > kids.length)
+                kids = Arrays.copyOf(kids, Math.max(2 * kids.length, used + size));
+            System.arraycopy(kids, base[x], kids, used, count);
+            base[x] = used;
+            used += size;
+        }
+        int rank = Long.bitCount(b & ((1L << c) - 1));
+        int start = base[x];
+        System.arraycopy(kids, start + rank, kids, start + rank + 1, count - rank);
+        kids[start + rank] = child;
+        bits[x] = b | (1L << c);
+        return child;
+    }
+
+    // slots in the block of a node with count children
+    private static int capacity(int count) {
+        if (count <= 1) return count;
+        return Integer.highestOneBit(count - 1) << 1;
+    }
+
+    private int newNode() {
+        if (nodes == bits.length) {
+            bits = Arrays.copyOf(bits, 2 * nodes);
+            base = Arrays.copyOf(base, 2 * nodes);
+            vals = Arrays.copyOf(vals, 2 * nodes);
+        }
+        vals[nodes] = Double.NaN;
+        return nodes++;
+    }
+
+    /**
+     * @return the number of key-value pairs in this symbol table
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Is this symbol table empty?
+     * @return true if this symbol table is empty and false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns all keys in the symbol table, in alphabet order.
+     * @return all keys in the symbol table
+     */
+    public Queue<String> keys() {
+        return keysWithPrefix("");
+    }
+
+    /**
+     * Returns all of the keys in the set that start with the supplied prefix.
+     * @param prefix the prefix
+     * @return all of the keys in the set that start with prefix,
+     *     as an iterable
+     */
+    public Queue<String> keysWithPrefix(String prefix) {
+        Queue<String> results = new Queue<String>();
+        int x = find(prefix, prefix.length());
+        if (x != -1) collect(x, new StringBuilder(prefix), results);
+        return results;
+    }
+
+    /**
+     * Returns at most k of the keys in the set that start with the supplied
+     * prefix, in alphabet order, stopping as soon as k keys are found.
+     * @param prefix the prefix
+     * @param k the maximum number of keys to return
+     * @return at most k keys that start with prefix
+     */
+    public Queue<String> keysWithPrefix(String prefix, int k) {
+        Queue<String> results = new Queue<String>();
+        int x = find(prefix, prefix.length());
+        if (x != -1) collect(x, new StringBuilder(prefix), results, k, -1);
+        return results;
+    }
+
+    /**
+     * Returns the k keys sharing the longest prefixes with query.
+     * Keys are collected below the deepest node matching a prefix of query,
+     * then below each of its ancestors in turn (skipping the subtree already
+     * collected) until k are found, so this costs O(k * depth) rather than
+     * the size of the subtrees.
+     * @param query the query string
+     * @param k the number of keys to return
+     * @return k keys (fewer if the table is smaller), longest shared prefix first
+     */
+    public Queue<String> nearestKeys(String query, int k) {
+        Queue<String> results = new Queue<String>();
+        int[] path = new int[query.length() + 1];   // path[d] = node of query's first d characters
+        int d = 0;
+        while (d < query.length()) {
+            char c = query.charAt(d);
+            int x = alphabet.contains(c) ? child(path[d], alphabet.toIndex(c)) : -1;
+            if (x == -1) break;
+            path[++d] = x;
+        }
+        StringBuilder prefix = new StringBuilder(query.substring(0, d));
+        collect(path[d], prefix, results, k, -1);
+        for (int i = d - 1; i >= 0 && results.size() < k; i--) {
+            prefix.setLength(i);
+            collect(path[i], prefix, results, k, path[i + 1]);
+        }
+        return results;
+    }
+
+    private void collect(int x, StringBuilder prefix, Queue<String> results) {
+        collect(x, prefix, results, Integer.MAX_VALUE, -1);
+    }
+
+    // collects keys below x until results holds k, skipping the subtree of child skip
+    private void collect(int x, StringBuilder prefix, Queue<String> results, int k, int skip) {
+        if (!Double.isNaN(vals[x])) {
+            results.enqueue(prefix.toString());
+        }
+        long b = bits[x];
+        for (int i = 0; b != 0 && results.size() < k; i++, b &= b - 1) {
+            int child = kids[base[x] + i];
+            if (child == skip) continue;
+            prefix.append(alphabet.toChar(Long.numberOfTrailingZeros(b)));
+            collect(child, prefix, results, k, -1);
+            prefix.deleteCharAt(prefix.length() - 1);
+        }
+    }
+
+    /**
+     * Returns the string in the symbol table that is the longest prefix of query,
+     * or null, if no such string.
+     * @param query the query string
+     * @return the string in the symbol table that is the longest prefix of query,
+     *     or null if no such string
+     * @throws NullPointerException if query is null
+     */
+    public String longestPrefixOf(String query) {
+        int length = -1;
+        int x = ROOT;
+        for (int d = 0; x != -1; d++) {
+            if (!Double.isNaN(vals[x])) length = d;
+            if (d == query.length()) break;
+            char c = query.charAt(d);
+            x = alphabet.contains(c) ? child(x, alphabet.toIndex(c)) : -1;
+        }
+        if (length == -1) return null;
+        return query.substring(0, length);
+    }
+
+    /**
+     * Removes the key from the set if the key is present.
+     * The nodes of the key stay in the trie, to be reused if it is put again.
+     * @param key the key
+     * @throws NullPointerException if key is null
+     */
+    public void delete(String key) {
+        int x = find(key, key.length());
+        if (x == -1 || Double.isNaN(vals[x])) return;
+        vals[x] = Double.NaN;
+        n--;
+    }
+
+}
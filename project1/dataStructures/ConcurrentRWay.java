@@ -0,0 +1,223 @@
+package dataStructures;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  The ConcurrentRWay class is an R-way trie symbol table that any number
+ *  of threads can put into and get from at once, without locks, so parallel
+ *  searches can share one table instead of funnelling through one thread.
+ *
+ *  Child links are slots of an AtomicReferenceArray. A put walks down the
+ *  trie and installs a missing child with compareAndSet; a thread that loses
+ *  the race uses the node the winner installed, so both keys end up under
+ *  the same node. Values are swapped in atomically too, and the size is
+ *  counted when a value goes from absent to present (or back), so it is
+ *  exact once the threads putting have finished.
+ *
+ *  Nodes are never unlinked: delete only clears the value, since pruning an
+ *  empty subtrie could race with a put below it. Reads see every put that
+ *  completed before they started. keysWithPrefix is weakly consistent: it
+ *  never fails because of concurrent puts, and reflects some of the puts
+ *  made while it runs. Values cannot be null.
+ *
+ * @author Craig Mazzotta
+ */
+public class ConcurrentRWay<Value> {
+
+    private static final AtomicReferenceFieldUpdater<Node, Object> VAL =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "val");
+
+    private final Alphabet alphabet;              // characters of a key
+    private final int R;                          // radix of the alphabet
+    private final Node root;                      // root of trie
+    private final LongAdder n = new LongAdder();  // number of keys in trie
+
+    // R-way trie node
+    private static class Node {
+        private volatile Object val;
+        private final AtomicReferenceArray<Node> next;
+
+        Node(int R) {
+            next = new AtomicReferenceArray<Node>(R);
+        }
+    }
+
+    /**
+     * Initializes an empty string symbol table over the password characters.
+     */
+    public ConcurrentRWay() {
+        this(RWay.validChars);
+    }
+
+    /**
+     * Initializes an empty string symbol table.
+     * @param alphabet the characters keys are made of
+     */
+    public ConcurrentRWay(Alphabet alphabet) {
+        this.alphabet = alphabet;
+        this.R = alphabet.radix();
+        root = new Node(R);
+    }
+
+    /**
+     * Returns the value associated with the given key.
+     * @param key the key
+     * @return the value associated with the given key if the key is in the symbol table
+     *     and null if the key is not in the symbol table
+     * @throws NullPointerException if key is null
+     */
+    @SuppressWarnings("unchecked")
+    public Value get(String key) {
+        Node x = find(key);
+        if (x == null) return null;
+        return (Value) x.val;
+    }
+
+    /**
+     * Does this symbol table contain the given key?
+     * @param key the key
+     * @return true if this symbol table contains key and
+     *      false otherwise
+     * @throws NullPointerException if key is null
+     */
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    // node of key, or null if no key starts with it
+    private Node find(String key) {
+        Node x = root;
+        for (int d = 0; x != null && d < key.length(); d++) {
+            int index = alphabet.indexOf(key.charAt(d));
+            if (index == -1) return null;
+            x = x.next.get(index);
+        }
+        return x;
+    }
+
+    /**
+     * Inserts the key-value pair into the symbol table, overwriting the old value
+     * with the new value if the key is already in the symbol table.
+     * If the value is null, this effectively deletes the key from the symbol table.
+     * @param key the key
+     * @param val the value
+     * @throws NullPointerException if key is null
+     */
+    public void put(String key, Value val) {
+        if (val == null) {
+            delete(key);
+            return;
+        }
+        if (VAL.getAndSet(install(key), val) == null) n.increment();
+    }
+
+    /**
+     * Inserts the key-value pair unless the key is already in the symbol
+     * table, as one atomic step, so of several threads putting the same key
+     * exactly one wins.
+     * @param key the key
+     * @param val the value
+     * @return the value already associated with key, or null if val was inserted
+     * @throws NullPointerException if key or val is null
+     */
+    @SuppressWarnings("unchecked")
+    public Value putIfAbsent(String key, Value val) {
+        if (val == null) throw new NullPointerException("val");
+        Node x = install(key);
+        while (true) {
+            Object old = x.val;
+            if (old != null) return (Value) old;
+            if (VAL.compareAndSet(x, null, val)) {
+                n.increment();
+                return null;
+            }
+        }
+    }
+
+    // node of key, creating the missing nodes on the way
+    private Node install(String key) {
+        Node x = root;
+        for (int d = 0; d < key.length(); d++) {
+            int index = alphabet.toIndex(key.charAt(d));
+            Node child = x.next.get(index);
+            if (child == null) {
+                Node created = new Node(R);
+                if (x.next.compareAndSet(index, null, created)) child = created;
+                else child = x.next.get(index);  // another thread installed it first
+            }
+            x = child;
+        }
+        return x;
+    }
+
+    /**
+     * Removes the key from the set if the key is present.
+     * @param key the key
+     * @throws NullPointerException if key is null
+     */
+    public void delete(String key) {
+        Node x = find(key);
+        if (x != null && VAL.getAndSet(x, null) != null) n.decrement();
+    }
+
+    /**
+     * @return the number of key-value pairs in this symbol table
+     */
+    public int size() {
+        return n.intValue();
+    }
+
+    /**
+     * Is this symbol table empty?
+     * @return true if this symbol table is empty and false otherwise
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns all keys in the symbol table as an {@code Iterable}.
+     * @return all keys in the symbol table as an {@code Iterable}
+     */
+    public Queue<String> keys() {
+        return keysWithPrefix("");
+    }
+
+    /**
+     * Returns all of the keys in the set that start with the supplied prefix,
+     * in alphabet order. Weakly consistent: keys put or deleted while this
+     * runs may or may not be reflected.
+     * @param prefix the prefix
+     * @return all of the keys in the set that start with prefix,
+     *     as an iterable
+     */
+    public Queue<String> keysWithPrefix(String prefix) {
+        return keysWithPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most k of the keys in the set that start with the supplied
+     * prefix, in alphabet order, stopping as soon as k keys are found.
+     * @param prefix the prefix
+     * @param k the maximum number of keys to return
+     * @return at most k keys that start with prefix
+     */
+    public Queue<String> keysWithPrefix(String prefix, int k) {
+        Queue<String> results = new Queue<String>();
+        collect(find(prefix), new StringBuilder(prefix), results, k);
+        return results;
+    }
+
+    private void collect(Node x, StringBuilder prefix, Queue<String> results, int k) {
+        if (x == null) return;
+        if (x.val != null) results.enqueue(prefix.toString());
+        for (int c = 0; c < R && results.size() < k; c++) {
+            Node child = x.next.get(c);
+            if (child == null) continue;
+            prefix.append(alphabet.toChar(c));
+            collect(child, prefix, results, k);
+            prefix.deleteCharAt(prefix.length() - 1);
+        }
+    }
+}
@@ -57,13 +57,44 @@ public class DLB {
 			}
 		}
 
+		return status(currentNode);
+	}
+
+	/**
+	* Search the DLB trie for the key stored in key[from..to), walking the trie
+	* one character at a time without creating a string for the key.
+	*
+	* @param key The characters containing the key
+	* @param from The index of the first character of the key
+	* @param to One past the index of the last character of the key
+	* @return 0-3 0 if not a word or prefix, 1 for just a prefix, 2 for just a word,
+	*			and 3 for a word and a prefix
+	*/
+	public int search(char[] key, int from, int to) {
+		Node currentNode = rootNode;
+		for (int i = from; i < to; i++) {
+			currentNode = getChild(currentNode, key[i]);
+
+			if (currentNode == null) { // Not a word or a prefix
+				return 0;
+			}
+		}
+		return status(currentNode);
+	}
+
+	/**
+	 * Classifies the node reached by a search.
+	 * @param currentNode The node of the last character of the key
+	 * @return 1 for just a prefix, 2 for just a word, and 3 for a word and a prefix
+	 */
+	private int status(Node currentNode) {
 		// currentNode is at the last chararacter of the string, not the terminator chararacter
 		// Find the node with terminator in currentNode's child nodes
 		Node terminatorNode = getChild(currentNode, TERMINATOR);
 		if (terminatorNode == null) { // The last char in the string does not have a terminator
 			return 1;	// Not a word, but a prefix
 		}
-		else if (terminatorNode.siblingNode == null) { // There is a terminator node, but it does not have siblings
+		else if (currentNode.childNode == terminatorNode && terminatorNode.siblingNode == null) { // The terminator node has no siblings
 			return 2; // A word, but not a prefix
 		}
 		else { // There is a terminator node and it has siblings
@@ -144,26 +175,26 @@ public class DLB {
 			return addSibling(parentNode.childNode, c); // Call addSibling() using the child node
 		}
 	}
-}
 
-/**
- * Represents a node in DLB trie
- */
-class Node {
-	Node siblingNode;
-	Node childNode;
-	char value;
+	/**
+	 * Represents a node in DLB trie
+	 */
+	static class Node {
+		Node siblingNode;
+		Node childNode;
+		char value;
 
-	public Node() { }
+		public Node() { }
 
-	public Node(char value) {
-		this(value, null, null);
-	}
+		public Node(char value) {
+			this(value, null, null);
+		}
 
-	public Node(char value, Node siblingNode, Node childNode) {
-		this.value = value;
-		this.siblingNode = siblingNode;
-		this.childNode = childNode;
+		public Node(char value, Node siblingNode, Node childNode) {
+			this.value = value;
+			this.siblingNode = siblingNode;
+			this.childNode = childNode;
+		}
 	}
 }
 
@@ -173,10 +204,10 @@ class Node {
  * added is true if the method added this node, false if the node already exists and method did not add the node.
  */
 class NodeAdded {
-	Node node;
+	DLB.Node node;
 	boolean added;
 
-	public NodeAdded(Node node, boolean added) {
+	public NodeAdded(DLB.Node node, boolean added) {
 		this.node = node;
 		this.added = added;
 	}
@@ -0,0 +1,210 @@
+package dataStructures;
+
+/**
+ *  The DirectTable class is a read-only symbol table of fixed-length
+ *  passwords and their times that uses each password's code as a direct
+ *  index, so get() does no searching or pointer chasing.
+ *
+ *  A password of length L over an alphabet of R characters is packed into
+ *  its base-R code in [0, R^L), first character most significant. The table
+ *  keeps one bit per possible code, set if that password is present, and a
+ *  rank directory holding the number of set bits before each 64-bit word.
+ *  The times are stored densely in code order, so the time of a present
+ *  code is at index rank(code), which takes one popcount to compute.
+ *
+ *  Every prefix corresponds to a contiguous range of codes, so the passwords
+ *  sharing a prefix are counted with two ranks and listed with next().
+ *
+ *  For 5 character passwords over 42 characters the bitset is 16MB and the
+ *  directory 8MB, plus 4 bytes per password for the times.
+ *
+ * @author Craig Mazzotta
+ */
+public class DirectTable {
+    private final Alphabet alphabet;  // characters of a password
+    private final int length;         // length of every password
+    private final int R;              // radix of the alphabet
+    private final int codes;          // number of possible codes, R^length
+    private final long[] bits;        // bit code set if that password is present
+    private final int[] ranks;        // number of set bits in bits[0..w)
+    private final float[] times;      // time of each present password, in code order
+
+    /**
+     * Builds the table from passwords sorted by code.
+     * @param alphabet the characters of a password
+     * @param length the length of every password
+     * @param sorted codes of the passwords, in increasing order
+     * @param times time of each password
+     * @param n number of passwords
+     * @throws IllegalArgumentException if the codes are not sorted and distinct,
+     *     or R^length doesn't fit in an int
+     */
+    public DirectTable(Alphabet alphabet, int length, int[] sorted, float[] times, int n) {
+        this.alphabet = alphabet;
+        this.length = length;
+        this.R = alphabet.radix();
+        long codes = 1;
+        for (int i = 0; i < length; i++)
+            codes *= R;
+        if (codes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Passwords of length " + length + " don't fit in a direct table");
+        this.codes = (int) codes;
+        bits = new long[(this.codes + 63) >>> 6];
+        ranks = new int[bits.length + 1];
+        this.times = new float[n];
+        for (int i = 0; i < n; i++) {
+            int code = sorted[i];
+            if (i > 0 && code <= sorted[i - 1])
+                throw new IllegalArgumentException("Codes must be sorted and distinct");
+            bits[code >>> 6] |= 1L << code;
+            this.times[i] = times[i];
+        }
+        for (int w = 0; w < bits.length; w++)
+            ranks[w + 1] = ranks[w] + Long.bitCount(bits[w]);
+    }
+
+    /**
+     * Builds the table from a password index.
+     * @param index the index
+     * @param alphabet the alphabet the index was written with
+     * @param length the length of every password in the index
+     * @return the table
+     */
+    public static DirectTable fromIndex(PasswordIndex index, Alphabet alphabet, int length) {
+        int n = index.size();
+        int[] codes = new int[n];
+        float[] times = new float[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = index.code(i);
+            times[i] = index.time(i);
+        }
+        return new DirectTable(alphabet, length, codes, times, n);
+    }
+
+    /**
+     * @return the number of passwords in the table
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Returns the time it took to find the given password.
+     * @param key the password
+     * @return the time, or {@code Float.NaN} if the password is not in the table
+     */
+    public float get(String key) {
+        return get(encode(key));
+    }
+
+    /**
+     * Returns the time it took to find the password with the given code.
+     * @param code the password's code
+     * @return the time, or {@code Float.NaN} if the password is not in the table
+     */
+    public float get(int code) {
+        if (code < 0 || code >= codes) return Float.NaN;
+        long word = bits[code >>> 6];
+        long bit = 1L << code;
+        if ((word & bit) == 0) return Float.NaN;
+        return times[ranks[code >>> 6] + Long.bitCount(word & (bit - 1))];
+    }
+
+    /**
+     * Does the table contain the given password?
+     * @param key the password
+     * @return true if the table contains key and false otherwise
+     */
+    public boolean contains(String key) {
+        return !Float.isNaN(get(key));
+    }
+
+    /**
+     * @param code a code in [0, R^length]
+     * @return the number of passwords with a code less than code
+     */
+    public int rank(int code) {
+        if (code >= codes) return times.length;
+        return ranks[code >>> 6] + Long.bitCount(bits[code >>> 6] & ((1L << code) - 1));
+    }
+
+    /**
+     * @param code a code
+     * @return the smallest code of a present password that is at least code,
+     *     or -1 if there is none
+     */
+    public int next(int code) {
+        if (code >= codes) return -1;
+        int w = code >>> 6;
+        long word = bits[w] & (-1L << code);
+        while (word == 0) {
+            if (++w == bits.length) return -1;
+            word = bits[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Packs a password into its code.
+     * @param key the password
+     * @return the code, or -1 if key is not a password of this table's length and alphabet
+     */
+    public int encode(String key) {
+        if (key.length() != length) return -1;
+        int code = 0;
+        for (int d = 0; d < length; d++) {
+            char c = key.charAt(d);
+            if (!alphabet.contains(c)) return -1;
+            code = code * R + alphabet.toIndex(c);
+        }
+        return code;
+    }
+
+    /**
+     * @param code a code in [0, R^length)
+     * @return the password with that code
+     */
+    public String decode(int code) {
+        char[] key = new char[length];
+        for (int d = length - 1; d >= 0; d--) {
+            key[d] = alphabet.toChar(code % R);
+            code /= R;
+        }
+        return new String(key);
+    }
+
+    /**
+     * Returns the first code of the range of passwords starting with prefix.
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return the smallest code starting with prefix
+     */
+    public int prefixLow(String prefix) {
+        if (prefix.length() > length)
+            throw new IllegalArgumentException("Prefix longer than a password: " + prefix);
+        int code = 0;
+        for (int d = 0; d < prefix.length(); d++)
+            code = code * R + alphabet.toIndex(prefix.charAt(d));
+        for (int d = prefix.length(); d < length; d++)
+            code *= R;
+        return code;
+    }
+
+    /**
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return one past the largest code starting with prefix
+     */
+    public int prefixHigh(String prefix) {
+        int span = 1;
+        for (int d = prefix.length(); d < length; d++)
+            span *= R;
+        return prefixLow(prefix) + span;
+    }
+
+    /**
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return the number of passwords starting with prefix
+     */
+    public int countWithPrefix(String prefix) {
+        return rank(prefixHigh(prefix)) - rank(prefixLow(prefix));
+    }
+}
@@ -0,0 +1,409 @@
+/**
+* This is a read-only, array-backed copy of a DLB trie for fast lookups.
+* Instead of a Node object per character, node i is stored across parallel arrays:
+*	label[i]	the character of the node
+*	first[i]	the index of the node's first child
+*	count[i]	the number of children, stored contiguously and sorted by label
+*	word[i]		true if a key ends at the node (the DLB's terminator child)
+* Children are found by scanning a short run of siblings or binary searching a
+* long one, and nodes are laid out level by level so siblings share cache lines.
+*
+* search() keeps the same 0-3 result contract as DLB.search().
+* child(), isWord() and hasChildren() let callers walk the trie one
+* character at a time using int node indices, without allocating.
+* forEachKey() streams the keys to a visitor without recursing or queueing them.
+*
+* Since the trie is just four arrays, write() saves it as a snapshot file and
+* read() loads it back without rebuilding the DLB. A snapshot records the length
+* and CRC-32 (see checksum()) of the file the words came from, and read() only
+* accepts a snapshot made from the same contents of that file, whatever its
+* modification time:
+*	int MAGIC, int nodes, long sourceLength, long sourceChecksum,
+*	char[nodes] label, int[nodes] first, int[nodes] count, byte[nodes] word
+*
+* @author Craig Mazzotta
+*/
+package dataStructures;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.zip.CRC32;
+import dataStructures.DLB.Node;
+
+public class FrozenDLB {
+
+	public static final int ROOT = 0;	// index of the root node
+	private static final int SCAN = 8;	// sibling runs up to this long are scanned instead of binary searched
+	private static final char TERMINATOR = '#';	// must match the DLB's terminator
+	private static final int MAGIC = 0x46444c42;	// "FDLB"
+	private static final int HEADER = 24;	// bytes before the arrays
+
+	private final char[] label;
+	private final int[] first;
+	private final int[] count;
+	private final boolean[] word;
+
+	/**
+	 * Copies the mutable trie into arrays. Later changes to the DLB are not seen.
+	 * @param trie The DLB trie to freeze
+	 */
+	public FrozenDLB(DLB trie) {
+		int nodes = countNodes(trie.rootNode.childNode) + 1;
+		label = new char[nodes];
+		first = new int[nodes];
+		count = new int[nodes];
+		word = new boolean[nodes];
+
+		// breadth first, so the children of each node are assigned consecutive indices
+		Node[] order = new Node[nodes];
+		order[ROOT] = trie.rootNode;
+		int next = 1;
+		for (int i = 0; i < next; i++) {
+			first[i] = next;
+			for (Node child = order[i].childNode; child != null; child = child.siblingNode) {
+				if (child.value == TERMINATOR) {
+					word[i] = true;
+				}
+				else {
+					order[next] = child;
+					label[next] = child.value;
+					next++;
+				}
+			}
+			count[i] = next - first[i];
+			sortChildren(order, first[i], next);
+		}
+	}
+
+	private FrozenDLB(char[] label, int[] first, int[] count, boolean[] word) {
+		this.label = label;
+		this.first = first;
+		this.count = count;
+		this.word = word;
+	}
+
+	/**
+	 * Loads a snapshot written by write(), if it was made from the given version of the source.
+	 * @param file The snapshot file
+	 * @param sourceLength The current length of the file the words came from
+	 * @param sourceChecksum The current checksum() of that file
+	 * @return The trie, or null if the snapshot is missing or was made from another version
+	 * @throws IOException If the snapshot can't be read or is damaged
+	 */
+	public static FrozenDLB read(File file, long sourceLength, long sourceChecksum) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		try (FileChannel channel = new FileInputStream(file).getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			readFully(channel, header);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a dictionary snapshot");
+			}
+			int nodes = header.getInt();
+			if (header.getLong() != sourceLength || header.getLong() != sourceChecksum) {
+				return null;	// the words have changed since
+			}
+			if (nodes < 1 || channel.size() != HEADER + 11L * nodes) {
+				throw new IOException(file + " is truncated");
+			}
+			ByteBuffer body = ByteBuffer.allocate(11 * nodes);
+			readFully(channel, body);
+			char[] label = new char[nodes];
+			int[] first = new int[nodes];
+			int[] count = new int[nodes];
+			boolean[] word = new boolean[nodes];
+			body.asCharBuffer().get(label);
+			body.position(2 * nodes);
+			body.asIntBuffer().get(first);
+			body.position(6 * nodes);
+			body.asIntBuffer().get(count);
+			body.position(10 * nodes);
+			for (int i = 0; i < nodes; i++) {
+				word[i] = body.get() != 0;
+			}
+			return new FrozenDLB(label, first, count, word);
+		}
+	}
+
+	/**
+	 * Saves the trie as a snapshot, replacing the file.
+	 * @param file The snapshot file
+	 * @param sourceLength The length of the file the words came from
+	 * @param sourceChecksum The checksum() of that file
+	 * @throws IOException If the file can't be written
+	 */
+	public void write(File file, long sourceLength, long sourceChecksum) throws IOException {
+		int nodes = label.length;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + 11 * nodes);
+		buffer.putInt(MAGIC).putInt(nodes).putLong(sourceLength).putLong(sourceChecksum);
+		buffer.asCharBuffer().put(label);
+		buffer.position(HEADER + 2 * nodes);
+		buffer.asIntBuffer().put(first);
+		buffer.position(HEADER + 6 * nodes);
+		buffer.asIntBuffer().put(count);
+		buffer.position(HEADER + 10 * nodes);
+		for (int i = 0; i < nodes; i++) {
+			buffer.put(word[i] ? (byte) 1 : (byte) 0);
+		}
+		buffer.flip();
+		try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Computes the CRC-32 of a file's contents, which a snapshot records to
+	 * tell whether the words have changed since it was written.
+	 * @param source The file the words come from
+	 * @return The checksum
+	 * @throws IOException If the file can't be read
+	 */
+	public static long checksum(File source) throws IOException {
+		CRC32 crc = new CRC32();
+		try (InputStream in = new FileInputStream(source)) {
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, read);
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("Dictionary snapshot ends early");
+			}
+		}
+		buffer.flip();
+	}
+
+	// number of non-terminator nodes in the sibling chain and everything below it,
+	// with an explicit stack of the sibling chains still to count
+	private static int countNodes(Node siblingStart) {
+		int nodes = 0;
+		ArrayDeque<Node> chains = new ArrayDeque<Node>();
+		if (siblingStart != null) {
+			chains.push(siblingStart);
+		}
+		while (!chains.isEmpty()) {
+			for (Node node = chains.pop(); node != null; node = node.siblingNode) {
+				if (node.value != TERMINATOR) {
+					nodes++;
+					if (node.childNode != null) {
+						chains.push(node.childNode);
+					}
+				}
+			}
+		}
+		return nodes;
+	}
+
+	// insertion sort of a run of siblings by label; runs are at most the alphabet size
+	private void sortChildren(Node[] order, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			Node node = order[i];
+			char c = label[i];
+			int j = i - 1;
+			while (j >= from && label[j] > c) {
+				order[j + 1] = order[j];
+				label[j + 1] = label[j];
+				j--;
+			}
+			order[j + 1] = node;
+			label[j + 1] = c;
+		}
+	}
+
+	/**
+	 * @return The number of nodes in the trie, including the root
+	 */
+	public int size() {
+		return label.length;
+	}
+
+	/**
+	 * Finds the child of a node holding char c.
+	 * @param node The index of the parent node
+	 * @param c The char to search for
+	 * @return The index of the child, or -1 if there is none
+	 */
+	public int child(int node, char c) {
+		int lo = first[node];
+		int hi = lo + count[node];
+		if (hi - lo <= SCAN) {
+			for (int i = lo; i < hi; i++) {
+				if (label[i] == c) {
+					return i;
+				}
+				if (label[i] > c) { // siblings are sorted, c can't come later
+					return -1;
+				}
+			}
+			return -1;
+		}
+		hi--;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (label[mid] < c) lo = mid + 1;
+			else if (label[mid] > c) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param node The index of a node
+	 * @return True if a key ends at the node
+	 */
+	public boolean isWord(int node) {
+		return word[node];
+	}
+
+	/**
+	 * @param node The index of a node
+	 * @return True if a longer key continues past the node
+	 */
+	public boolean hasChildren(int node) {
+		return count[node] > 0;
+	}
+
+	/**
+	 * Scans every node, so call it once per character and keep the answer.
+	 * @param c The char to look for
+	 * @return True if c is in some key
+	 */
+	public boolean occurs(char c) {
+		for (int i = ROOT + 1; i < label.length; i++) {
+			if (label[i] == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Receives the keys of an enumeration one at a time.
+	 */
+	public interface Visitor {
+		/**
+		 * @param key The key, valid only until visit returns
+		 * @return True to continue with the next key, false to stop
+		 */
+		boolean visit(CharSequence key);
+	}
+
+	/**
+	 * Returns the keys of at most the given length, in label order.
+	 * @param maxLength The length of the longest key to return
+	 * @return The keys
+	 */
+	public Queue<String> keys(int maxLength) {
+		final Queue<String> results = new Queue<String>();
+		forEachKey(maxLength, key -> {
+			results.enqueue(key.toString());
+			return true;
+		});
+		return results;
+	}
+
+	/**
+	 * Passes the keys of at most the given length to the visitor, in label
+	 * order, until it returns false. The trie is walked depth first with an
+	 * explicit stack of the next child to try at each depth, and the key is
+	 * built in one buffer, so nothing is allocated per key.
+	 * @param maxLength The length of the longest key to visit
+	 * @param visitor Receives the keys
+	 * @return The number of keys visited
+	 */
+	public int forEachKey(int maxLength, Visitor visitor) {
+		StringBuilder key = new StringBuilder();
+		int[] next = new int[maxLength + 1];	// next child to try at each depth
+		int[] end = new int[maxLength + 1];	// one past the last child at each depth
+		int visited = 0;
+		if (word[ROOT]) {
+			visited++;
+			if (!visitor.visit(key)) {
+				return visited;
+			}
+		}
+		if (maxLength == 0) {
+			return visited;
+		}
+		int depth = 0;
+		next[0] = first[ROOT];
+		end[0] = first[ROOT] + count[ROOT];
+		while (depth >= 0) {
+			if (next[depth] == end[depth]) {	// no children left, back up
+				depth--;
+				if (depth >= 0) {
+					key.setLength(depth);
+				}
+				continue;
+			}
+			int node = next[depth]++;
+			key.setLength(depth);
+			key.append(label[node]);
+			if (word[node]) {
+				visited++;
+				if (!visitor.visit(key)) {
+					return visited;
+				}
+			}
+			if (depth + 1 < maxLength && count[node] > 0) {
+				depth++;
+				next[depth] = first[node];
+				end[depth] = first[node] + count[node];
+			}
+		}
+		return visited;
+	}
+
+	/**
+	* Search the trie for the specific key
+	*
+	* @param key The key being searched for
+	* @return 0-3 0 if not a word or prefix, 1 for just a prefix, 2 for just a word,
+	*			and 3 for a word and a prefix
+	*/
+	public int search(CharSequence key) {
+		int node = ROOT;
+		for (int i = 0; i < key.length() && node != -1; i++) {
+			node = child(node, key.charAt(i));
+		}
+		return status(node);
+	}
+
+	/**
+	* Search the trie for the key stored in key[from..to)
+	*
+	* @param key The characters containing the key
+	* @param from The index of the first character of the key
+	* @param to One past the index of the last character of the key
+	* @return 0-3 0 if not a word or prefix, 1 for just a prefix, 2 for just a word,
+	*			and 3 for a word and a prefix
+	*/
+	public int search(char[] key, int from, int to) {
+		int node = ROOT;
+		for (int i = from; i < to && node != -1; i++) {
+			node = child(node, key[i]);
+		}
+		return status(node);
+	}
+
+	// the 0-3 search result for the node reached by a key
+	private int status(int node) {
+		if (node == -1) { // Not a word or a prefix
+			return 0;
+		}
+		if (!word[node]) {
+			return 1;	// Not a word, but a prefix
+		}
+		return count[node] > 0 ? 3 : 2;	// A word, and a prefix if it has children
+	}
+}
@@ -0,0 +1,332 @@
+package dataStructures;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ *  The PasswordIndex class is a read-only symbol table of fixed-length
+ *  passwords and the time it took to find each one, stored in a compact
+ *  binary file that is memory-mapped instead of parsed.
+ *
+ *  Each password is packed into an int as a base-R number of its alphabet
+ *  indices, first character most significant, so sorting the codes sorts the
+ *  passwords in alphabet order and all passwords sharing a prefix form one
+ *  contiguous run of codes. The file holds a header, the sorted codes, and a
+ *  parallel column of float times:
+ *
+ *      int MAGIC, int length, int radix, int n, int[n] codes, float[n] times
+ *
+ *  Lookups are binary searches over the mapped codes, so a query can be
+ *  answered as soon as the file is opened.
+ *
+ *  The index is written by pw_check -find (see Builder) and read by -check.
+ *
+ * @author Craig Mazzotta
+ */
+public class PasswordIndex {
+    private static final int MAGIC = 0x50574458;   // "PWDX"
+    private static final int HEADER = 16;          // bytes before the codes
+
+    private final Alphabet alphabet;  // characters of a password
+    private final int length;         // length of every password
+    private final int R;              // radix of the alphabet
+    private final int n;              // number of passwords
+    private final IntBuffer codes;    // sorted password codes
+    private final FloatBuffer times;  // time to find each password
+
+    private PasswordIndex(Alphabet alphabet, int length, int n, IntBuffer codes, FloatBuffer times) {
+        this.alphabet = alphabet;
+        this.length = length;
+        this.R = alphabet.radix();
+        this.n = n;
+        this.codes = codes;
+        this.times = times;
+    }
+
+    /**
+     * Memory-maps an index written by {@link Builder#write}.
+     * @param file the index file
+     * @param alphabet the alphabet the passwords were encoded with
+     * @return the index
+     * @throws IOException if the file can't be read or is not an index for this alphabet
+     */
+    public static PasswordIndex open(File file, Alphabet alphabet) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.capacity() < HEADER || map.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a password index");
+            int length = map.getInt(4);
+            int radix = map.getInt(8);
+            int n = map.getInt(12);
+            if (radix != alphabet.radix())
+                throw new IOException(file + " was written for an alphabet of " + radix + " characters");
+            if (map.capacity() != HEADER + 8L * n)
+                throw new IOException(file + " is truncated");
+            map.position(HEADER);
+            IntBuffer codes = map.slice().asIntBuffer();
+            codes.limit(n);
+            map.position(HEADER + 4 * n);
+            FloatBuffer times = map.slice().asFloatBuffer();
+            times.limit(n);
+            return new PasswordIndex(alphabet, length, n, codes, times);
+        }
+    }
+
+    /**
+     * @return the number of passwords in the index
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return the length of every password in the index
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Does the index contain the given password?
+     * @param key the password
+     * @return true if the index contains key and false otherwise
+     */
+    public boolean contains(String key) {
+        return rank(key) >= 0;
+    }
+
+    /**
+     * Returns the time it took to find the given password.
+     * @param key the password
+     * @return the time, or {@code Float.NaN} if the password is not in the index
+     */
+    public float get(String key) {
+        int i = rank(key);
+        if (i < 0) return Float.NaN;
+        return times.get(i);
+    }
+
+    /**
+     * Returns the position of a password in sorted order.
+     * @param key the password
+     * @return the position of key, or -1 if it is not in the index
+     */
+    public int rank(String key) {
+        if (key.length() != length) return -1;
+        int code = 0;
+        for (int d = 0; d < length; d++) {
+            char c = key.charAt(d);
+            if (!alphabet.contains(c)) return -1;
+            code = code * R + alphabet.toIndex(c);
+        }
+        int i = lowerBound(code);
+        if (i < n && codes.get(i) == code) return i;
+        return -1;
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the i-th password in sorted order
+     */
+    public String key(int i) {
+        char[] key = new char[length];
+        int code = codes.get(i);
+        for (int d = length - 1; d >= 0; d--) {
+            key[d] = alphabet.toChar(code % R);
+            code /= R;
+        }
+        return new String(key);
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the code of the i-th password in sorted order
+     */
+    public int code(int i) {
+        return codes.get(i);
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the time it took to find the i-th password in sorted order
+     */
+    public float time(int i) {
+        return times.get(i);
+    }
+
+    /**
+     * Returns the first position of the passwords starting with prefix.
+     * Together with {@link #prefixEnd} this gives the contiguous run of
+     * positions {@code [prefixStart, prefixEnd)} sharing the prefix.
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return the position of the first password starting with prefix
+     */
+    public int prefixStart(String prefix) {
+        return lowerBound(prefixLow(prefix));
+    }
+
+    /**
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return one past the position of the last password starting with prefix
+     */
+    public int prefixEnd(String prefix) {
+        return lowerBound(prefixLow(prefix) + span(prefix.length()));
+    }
+
+    /**
+     * Returns the longest prefix of query shared with a password in the index.
+     * @param query the query string
+     * @return the longest prefix of query that starts some password, which
+     *     is the empty string if none do
+     */
+    public String longestPrefixOf(String query) {
+        int d = 0;
+        while (d < query.length() && d < length && alphabet.contains(query.charAt(d))) {
+            String prefix = query.substring(0, d + 1);
+            if (prefixStart(prefix) == prefixEnd(prefix)) break;
+            d++;
+        }
+        return query.substring(0, d);
+    }
+
+    // code of the first password starting with prefix
+    private int prefixLow(String prefix) {
+        if (prefix.length() > length)
+            throw new IllegalArgumentException("Prefix longer than a password: " + prefix);
+        int code = 0;
+        for (int d = 0; d < prefix.length(); d++)
+            code = code * R + alphabet.toIndex(prefix.charAt(d));
+        return code * span(prefix.length());
+    }
+
+    // number of codes sharing a prefix of length d
+    private int span(int d) {
+        int span = 1;
+        for (int i = d; i < length; i++)
+            span *= R;
+        return span;
+    }
+
+    // first position whose code is >= code
+    private int lowerBound(int code) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (codes.get(mid) < code) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Collects passwords and times in any order and writes them out as a
+     * sorted index. A password added more than once keeps its least time.
+     * Not thread-safe; feed it from a single thread.
+     */
+    public static class Builder {
+        private final Alphabet alphabet;
+        private final int length;
+        private final int R;
+        private int[] codes = new int[1024];
+        private float[] times = new float[1024];
+        private int n;
+        private boolean sorted = true;  // were the codes added in strictly increasing order?
+
+        /**
+         * @param alphabet the characters of a password
+         * @param length the length of every password
+         * @throws IllegalArgumentException if a password of this length doesn't fit in an int
+         */
+        public Builder(Alphabet alphabet, int length) {
+            this.alphabet = alphabet;
+            this.length = length;
+            this.R = alphabet.radix();
+            long codes = 1;
+            for (int i = 0; i < length; i++)
+                codes *= R;
+            if (codes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Passwords of length " + length + " don't fit in an index");
+        }
+
+        /**
+         * Adds the password stored in s[start..start+length).
+         * @param s the characters containing the password
+         * @param start the index of the first character of the password
+         * @param time the time it took to find the password
+         */
+        public void add(CharSequence s, int start, double time) {
+            int code = 0;
+            for (int d = 0; d < length; d++)
+                code = code * R + alphabet.toIndex(s.charAt(start + d));
+            if (n == codes.length) {
+                codes = Arrays.copyOf(codes, 2 * n);
+                times = Arrays.copyOf(times, 2 * n);
+            }
+            if (n > 0 && codes[n - 1] >= code) sorted = false;
+            codes[n] = code;
+            times[n] = (float) time;
+            n++;
+        }
+
+        /**
+         * @return the number of passwords added, counting a repeated password once after write()
+         */
+        public int size() {
+            return n;
+        }
+
+        /**
+         * Sorts the passwords, if they weren't added in order, and writes the index.
+         * @param file the file to write
+         * @throws IOException if the file can't be written
+         */
+        public void write(File file) throws IOException {
+            if (!sorted) sort();
+            try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                buffer.putInt(MAGIC).putInt(length).putInt(R).putInt(n);
+                for (int i = 0; i < n; i++) {
+                    if (!buffer.hasRemaining()) drain(channel, buffer);
+                    buffer.putInt(codes[i]);
+                }
+                for (int i = 0; i < n; i++) {
+                    if (!buffer.hasRemaining()) drain(channel, buffer);
+                    buffer.putFloat(times[i]);
+                }
+                drain(channel, buffer);
+            }
+        }
+
+        private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        // sorts codes, carrying times along, by packing both into one long, then
+        // drops repeated codes; the bits of non-negative floats sort like their values,
+        // so the first of a run has the least time
+        private void sort() {
+            long[] pairs = new long[n];
+            for (int i = 0; i < n; i++)
+                pairs[i] = ((long) codes[i] << 32) | (Float.floatToRawIntBits(times[i]) & 0xffffffffL);
+            Arrays.sort(pairs);
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                int code = (int) (pairs[i] >>> 32);
+                if (kept > 0 && codes[kept - 1] == code) continue;
+                codes[kept] = code;
+                times[kept] = Float.intBitsToFloat((int) pairs[i]);
+                kept++;
+            }
+            n = kept;
+            sorted = true;
+        }
+    }
+}
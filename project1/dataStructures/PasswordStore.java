@@ -0,0 +1,483 @@
+package dataStructures;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  The PasswordStore class is a read-only symbol table of fixed-length
+ *  passwords and the time it took to find each one, for password sets too
+ *  big for the heap or for a PasswordIndex, whose codes are ints.
+ *
+ *  Each password is packed into a long as a base-R number of its alphabet
+ *  indices, first character most significant, so sorted codes are sorted
+ *  passwords and the passwords sharing a prefix form one contiguous run.
+ *  The file holds a header and then one fixed-width record per password,
+ *  sorted by code:
+ *
+ *      int MAGIC, int length, int radix, int unused, long n,
+ *      n records of (long code, float time)
+ *
+ *  The records are memory-mapped, in segments since one mapping can't pass
+ *  2 GB, and never copied onto the heap. Only every SPARSE-th code is kept
+ *  in memory; a lookup binary searches those, then the one block of SPARSE
+ *  records in the mapped file that can hold the answer. A prefix query is
+ *  the same search for both ends of the prefix's run followed by a
+ *  sequential scan of the run, so the heap used stays the same however many
+ *  passwords the store holds.
+ *
+ *  Stores are written by {@link Builder}, which sorts any number of
+ *  passwords in runs that fit in memory and merges them.
+ *
+ * @author Craig Mazzotta
+ */
+public class PasswordStore {
+    private static final int MAGIC = 0x50575353;            // "PWSS"
+    private static final int HEADER = 24;                   // bytes before the records
+    private static final int RECORD = 12;                   // bytes per record
+    private static final int SEGMENT_BITS = 26;             // log2 of the records per mapped segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int SPARSE = 1024;                 // records per sampled code
+
+    private final Alphabet alphabet;           // characters of a password
+    private final int length;                  // length of every password
+    private final int R;                       // radix of the alphabet
+    private final long n;                      // number of passwords
+    private final MappedByteBuffer[] segments; // the records, 2^SEGMENT_BITS per segment
+    private final long[] sample;               // code of every SPARSE-th record
+
+    private PasswordStore(Alphabet alphabet, int length, long n, MappedByteBuffer[] segments) {
+        this.alphabet = alphabet;
+        this.length = length;
+        this.R = alphabet.radix();
+        this.n = n;
+        this.segments = segments;
+        sample = new long[(int) ((n + SPARSE - 1) / SPARSE)];
+        for (int b = 0; b < sample.length; b++)
+            sample[b] = code((long) b * SPARSE);
+    }
+
+    /**
+     * Memory-maps a store written by {@link Builder#write}.
+     * @param file the store file
+     * @param alphabet the alphabet the passwords were encoded with
+     * @return the store
+     * @throws IOException if the file can't be read or is not a store for this alphabet
+     */
+    public static PasswordStore open(File file, Alphabet alphabet) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER)
+                throw new IOException(file + " is not a password store");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a password store");
+            int length = header.getInt(4);
+            int radix = header.getInt(8);
+            long n = header.getLong(16);
+            if (radix != alphabet.radix())
+                throw new IOException(file + " was written for an alphabet of " + radix + " characters");
+            if (n < 0 || channel.size() != HEADER + RECORD * n)
+                throw new IOException(file + " is truncated");
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((n + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s << SEGMENT_BITS;
+                long records = Math.min(n - first, 1L << SEGMENT_BITS);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + RECORD * first, RECORD * records);
+            }
+            return new PasswordStore(alphabet, length, n, segments);
+        }
+    }
+
+    /**
+     * @return the number of passwords in the store
+     */
+    public long size() {
+        return n;
+    }
+
+    /**
+     * @return the length of every password in the store
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Does the store contain the given password?
+     * @param key the password
+     * @return true if the store contains key and false otherwise
+     */
+    public boolean contains(String key) {
+        return rank(key) >= 0;
+    }
+
+    /**
+     * Returns the time it took to find the given password.
+     * @param key the password
+     * @return the time, or {@code Float.NaN} if the password is not in the store
+     */
+    public float get(String key) {
+        long i = rank(key);
+        if (i < 0) return Float.NaN;
+        return time(i);
+    }
+
+    /**
+     * Returns the position of a password in sorted order.
+     * @param key the password
+     * @return the position of key, or -1 if it is not in the store
+     */
+    public long rank(String key) {
+        if (key.length() != length) return -1;
+        long code = 0;
+        for (int d = 0; d < length; d++) {
+            int index = alphabet.indexOf(key.charAt(d));
+            if (index == -1) return -1;
+            code = code * R + index;
+        }
+        long i = lowerBound(code);
+        if (i < n && code(i) == code) return i;
+        return -1;
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the i-th password in sorted order
+     */
+    public String key(long i) {
+        char[] key = new char[length];
+        long code = code(i);
+        for (int d = length - 1; d >= 0; d--) {
+            key[d] = alphabet.toChar((int) (code % R));
+            code /= R;
+        }
+        return new String(key);
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the code of the i-th password in sorted order
+     */
+    public long code(long i) {
+        return segments[(int) (i >>> SEGMENT_BITS)].getLong((int) (i & SEGMENT_MASK) * RECORD);
+    }
+
+    /**
+     * @param i a position in sorted order
+     * @return the time it took to find the i-th password in sorted order
+     */
+    public float time(long i) {
+        return segments[(int) (i >>> SEGMENT_BITS)].getFloat((int) (i & SEGMENT_MASK) * RECORD + 8);
+    }
+
+    /**
+     * Returns the first position of the passwords starting with prefix.
+     * Together with {@link #prefixEnd} this gives the contiguous run of
+     * positions {@code [prefixStart, prefixEnd)} sharing the prefix.
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return the position of the first password starting with prefix
+     */
+    public long prefixStart(String prefix) {
+        return lowerBound(prefixLow(prefix));
+    }
+
+    /**
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return one past the position of the last password starting with prefix
+     */
+    public long prefixEnd(String prefix) {
+        return lowerBound(prefixLow(prefix) + span(prefix.length()));
+    }
+
+    /**
+     * Returns the longest prefix of query shared with a password in the store.
+     * @param query the query string
+     * @return the longest prefix of query that starts some password, which
+     *     is the empty string if none do
+     */
+    public String longestPrefixOf(String query) {
+        int d = 0;
+        while (d < query.length() && d < length && alphabet.contains(query.charAt(d))) {
+            String prefix = query.substring(0, d + 1);
+            if (prefixStart(prefix) == prefixEnd(prefix)) break;
+            d++;
+        }
+        return query.substring(0, d);
+    }
+
+    /**
+     * Returns all of the passwords starting with prefix, in sorted order.
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @return the passwords starting with prefix
+     */
+    public Queue<String> keysWithPrefix(String prefix) {
+        return keysWithPrefix(prefix, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the first k passwords starting with prefix, in sorted order,
+     * scanning only as far into the run as it needs to.
+     * @param prefix the prefix, which must only contain alphabet characters
+     * @param k the maximum number of passwords to return
+     * @return at most k passwords starting with prefix
+     */
+    public Queue<String> keysWithPrefix(String prefix, long k) {
+        Queue<String> results = new Queue<String>();
+        long end = prefixEnd(prefix);
+        for (long i = prefixStart(prefix); i < end && results.size() < k; i++)
+            results.enqueue(key(i));
+        return results;
+    }
+
+    // code of the first password starting with prefix
+    private long prefixLow(String prefix) {
+        if (prefix.length() > length)
+            throw new IllegalArgumentException("Prefix longer than a password: " + prefix);
+        long code = 0;
+        for (int d = 0; d < prefix.length(); d++)
+            code = code * R + alphabet.toIndex(prefix.charAt(d));
+        return code * span(prefix.length());
+    }
+
+    // number of codes sharing a prefix of length d
+    private long span(int d) {
+        long span = 1;
+        for (int i = d; i < length; i++)
+            span *= R;
+        return span;
+    }
+
+    // first position whose code is >= code: a binary search of the sample
+    // picks the block, then a binary search of the mapped block finds it
+    private long lowerBound(long code) {
+        int lo = 0, hi = sample.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sample[mid] < code) lo = mid + 1;
+            else hi = mid;
+        }
+        long from = Math.max(0, (long) (lo - 1) * SPARSE);
+        long to = Math.min(n, (long) lo * SPARSE);
+        while (from < to) {
+            long mid = (from + to) >>> 1;
+            if (code(mid) < code) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /**
+     * Collects passwords and times in any order and writes them out as a
+     * sorted store. Passwords are sorted in memory RUN at a time; full runs
+     * are spilled to temporary files and merged by write(), so memory use
+     * doesn't grow with the number of passwords. A password added more than
+     * once keeps its least time. Not thread-safe; feed it from a single thread.
+     */
+    public static class Builder {
+        private static final int RUN = 1 << 21;  // records sorted in memory at a time
+
+        private final Alphabet alphabet;
+        private final int length;
+        private final int R;
+        private final long[] codes = new long[RUN];
+        private final float[] times = new float[RUN];
+        private int n;                                   // records in the current run
+        private final List<File> runs = new ArrayList<File>();  // spilled runs
+
+        /**
+         * @param alphabet the characters of a password
+         * @param length the length of every password
+         * @throws IllegalArgumentException if a password of this length doesn't fit in a long
+         */
+        public Builder(Alphabet alphabet, int length) {
+            this.alphabet = alphabet;
+            this.length = length;
+            this.R = alphabet.radix();
+            if (length * Math.log(R) >= 63 * Math.log(2))
+                throw new IllegalArgumentException("Passwords of length " + length + " don't fit in a store");
+        }
+
+        /**
+         * Adds the password stored in s[start..start+length).
+         * @param s the characters containing the password
+         * @param start the index of the first character of the password
+         * @param time the time it took to find the password
+         * @throws IOException if a full run can't be spilled
+         */
+        public void add(CharSequence s, int start, double time) throws IOException {
+            long code = 0;
+            for (int d = 0; d < length; d++)
+                code = code * R + alphabet.toIndex(s.charAt(start + d));
+            if (n == RUN) spill();
+            codes[n] = code;
+            times[n] = (float) time;
+            n++;
+        }
+
+        /**
+         * Sorts and merges everything added and writes the store, then
+         * deletes the spilled runs.
+         * @param file the file to write
+         * @return the number of passwords written
+         * @throws IOException if the file can't be written
+         */
+        public long write(File file) throws IOException {
+            try {
+                sort(0, n - 1);
+                if (runs.isEmpty()) return writeRun(file, true);
+                spill();
+                return merge(file);
+            }
+            finally {
+                for (File run : runs)
+                    run.delete();
+                runs.clear();
+            }
+        }
+
+        // sorts the current run and writes it to a temporary file
+        private void spill() throws IOException {
+            sort(0, n - 1);
+            File run = File.createTempFile("passwords", ".run");
+            run.deleteOnExit();
+            writeRun(run, false);
+            runs.add(run);
+            n = 0;
+        }
+
+        // writes the sorted current run, dropping repeated codes, with the store header if asked
+        private long writeRun(File file, boolean header) throws IOException {
+            long written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                if (header) writeHeader(out);
+                for (int i = 0; i < n; i++) {
+                    if (i > 0 && codes[i] == codes[i - 1]) continue;
+                    out.writeLong(codes[i]);
+                    out.writeFloat(times[i]);
+                    written++;
+                }
+            }
+            if (header) patchSize(file, written);
+            return written;
+        }
+
+        // k-way merge of the spilled runs into the store
+        private long merge(File file) throws IOException {
+            int k = runs.size();
+            DataInputStream[] in = new DataInputStream[k];
+            long[] code = new long[k];
+            float[] time = new float[k];
+            int[] heap = new int[k];   // runs with records left, by their current code
+            int live = 0;
+            long written = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                writeHeader(out);
+                for (int r = 0; r < k; r++) {
+                    in[r] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(r)), 1 << 16));
+                    if (next(in[r], code, time, r)) heap[live++] = r;
+                }
+                for (int i = live / 2 - 1; i >= 0; i--)
+                    sink(heap, live, i, code, time);
+                long last = -1;
+                while (live > 0) {
+                    int r = heap[0];
+                    if (code[r] != last) {  // runs are merged least time first, so a repeat can be dropped
+                        out.writeLong(code[r]);
+                        out.writeFloat(time[r]);
+                        last = code[r];
+                        written++;
+                    }
+                    if (!next(in[r], code, time, r)) heap[0] = heap[--live];
+                    sink(heap, live, 0, code, time);
+                }
+            }
+            finally {
+                for (DataInputStream stream : in)
+                    if (stream != null) stream.close();
+            }
+            patchSize(file, written);
+            return written;
+        }
+
+        // reads the next record of run r, false at its end
+        private static boolean next(DataInputStream in, long[] code, float[] time, int r) throws IOException {
+            try {
+                code[r] = in.readLong();
+                time[r] = in.readFloat();
+                return true;
+            }
+            catch (EOFException e) {
+                return false;
+            }
+        }
+
+        private static void sink(int[] heap, int live, int i, long[] code, float[] time) {
+            while (2 * i + 1 < live) {
+                int child = 2 * i + 1;
+                if (child + 1 < live && before(heap[child + 1], heap[child], code, time)) child++;
+                if (!before(heap[child], heap[i], code, time)) break;
+                int t = heap[i]; heap[i] = heap[child]; heap[child] = t;
+                i = child;
+            }
+        }
+
+        private static boolean before(int a, int b, long[] code, float[] time) {
+            return code[a] < code[b] || code[a] == code[b] && time[a] < time[b];
+        }
+
+        private void writeHeader(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(length);
+            out.writeInt(R);
+            out.writeInt(0);
+            out.writeLong(0);  // filled in by patchSize
+        }
+
+        private static void patchSize(File file, long n) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(16);
+                raf.writeLong(n);
+            }
+        }
+
+        // quicksort of codes[lo..hi] by code then time, carrying times along
+        private void sort(int lo, int hi) {
+            while (hi - lo > 16) {
+                int mid = (lo + hi) >>> 1;  // median of three as the pivot
+                if (less(mid, lo)) swap(mid, lo);
+                if (less(hi, lo)) swap(hi, lo);
+                if (less(hi, mid)) swap(hi, mid);
+                long pc = codes[mid];
+                float pt = times[mid];
+                int i = lo, j = hi;
+                while (i <= j) {
+                    while (codes[i] < pc || codes[i] == pc && times[i] < pt) i++;
+                    while (codes[j] > pc || codes[j] == pc && times[j] > pt) j--;
+                    if (i <= j) swap(i++, j--);
+                }
+                if (j - lo < hi - i) {  // recurse into the smaller side
+                    sort(lo, j);
+                    lo = i;
+                }
+                else {
+                    sort(i, hi);
+                    hi = j;
+                }
+            }
+            for (int i = lo + 1; i <= hi; i++)
+                for (int j = i; j > lo && less(j, j - 1); j--)
+                    swap(j, j - 1);
+        }
+
+        private boolean less(int a, int b) {
+            return codes[a] < codes[b] || codes[a] == codes[b] && times[a] < times[b];
+        }
+
+        private void swap(int a, int b) {
+            long c = codes[a]; codes[a] = codes[b]; codes[b] = c;
+            float t = times[a]; times[a] = times[b]; times[b] = t;
+        }
+    }
+}
@@ -1,4 +1,7 @@
 package dataStructures;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import dataStructures.Queue;
 import dataStructures.Alphabet;
 /**
@@ -16,6 +19,15 @@ import dataStructures.Alphabet;
  *  value associated with a key to null is equivalent to deleting the key
  *  from the symbol table.
  *
+ *  No operation recurses: lookups and inserts walk down the trie in a loop,
+ *  and delete and the key enumerations keep their path in an explicit stack
+ *  of their own, so a long key can't overflow the call stack. Keys can be
+ *  streamed with {@link #forEachWithPrefix}, which passes each one to a
+ *  visitor without building a queue, or {@link #keyIterator}.
+ *  The read-only methods keep no state in the trie, so any number of threads
+ *  may read a trie that is no longer being changed; changes need a single
+ *  thread with no readers (see ConcurrentRWay otherwise).
+ *
  * The RWay class is used to store valid passwords(keys) and their time
  *    to find(value) from pw_check.java
  *
@@ -39,6 +51,18 @@ public class RWay<Value> {
         private Node[] next = new Node[R];
     }
 
+    /**
+     * Receives the keys of an enumeration one at a time.
+     */
+    public interface Visitor<Value> {
+        /**
+         * @param key the key, valid only until visit returns
+         * @param val the value associated with the key
+         * @return true to continue with the next key, false to stop
+         */
+        boolean visit(CharSequence key, Value val);
+    }
+
     /**
       * Initializes an empty string symbol table.
       */
@@ -52,7 +76,7 @@ public class RWay<Value> {
      * @throws NullPointerException if key is null
      */
     public Value get(String key) {
-        Node x = get(root, key, 0);
+        Node x = get(root, key);
         if (x == null) return null;
         return (Value) x.val;
     }
@@ -68,12 +92,11 @@ public class RWay<Value> {
         return get(key) != null;
     }
 
-    private Node get(Node x, String key, int d) {
-        if (x == null) return null;
-        if (d == key.length()) return x;
-        char c = key.charAt(d);
-        int index = validChars.toIndex(c);
-        return get(x.next[index], key, d+1);
+    // node of key below x, or null if no key starts with it
+    private Node get(Node x, String key) {
+        for (int d = 0; x != null && d < key.length(); d++)
+            x = x.next[validChars.toIndex(key.charAt(d))];
+        return x;
     }
 
     /**
@@ -85,21 +108,19 @@ public class RWay<Value> {
      * @throws NullPointerException if key is null
      */
     public void put(String key, Value val) {
-        if (val == null) delete(key);
-        else root = put(root, key, val, 0);
-    }
-
-    private Node put(Node x, String key, Value val, int d) {
-        if (x == null) x = new Node();
-        if (d == key.length()) {
-            if (x.val == null) n++;
-            x.val = val;
-            return x;
+        if (val == null) {
+            delete(key);
+            return;
         }
-        char c = key.charAt(d);
-        int index = validChars.toIndex(c);
-        x.next[index] = put(x.next[index], key, val, d+1);
-        return x;
+        if (root == null) root = new Node();
+        Node x = root;
+        for (int d = 0; d < key.length(); d++) {
+            int index = validChars.toIndex(key.charAt(d));
+            if (x.next[index] == null) x.next[index] = new Node();
+            x = x.next[index];
+        }
+        if (x.val == null) n++;
+        x.val = val;
     }
 
     /**
@@ -134,25 +155,112 @@ public class RWay<Value> {
      *     as an iterable
      */
     public Queue<String> keysWithPrefix(String prefix) {
+        return keysWithPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most k of the keys in the set that start with the supplied
+     * prefix, in alphabet order, stopping as soon as k keys are found.
+     * @param prefix the prefix
+     * @param k the maximum number of keys to return
+     * @return at most k keys that start with prefix
+     */
+    public Queue<String> keysWithPrefix(String prefix, int k) {
         Queue<String> results = new Queue<String>();
-        Node x = get(root, prefix, 0);
-        collect(x, new StringBuilder(prefix), results);
+        Cursor c = new Cursor();
+        c.reset(get(root, prefix), prefix, null, null);
+        collect(c, results, k);
         return results;
     }
 
-    private void collect(Node x, StringBuilder prefix, Queue<String> results) {
-        if (x == null) {
-          return;
+    /**
+     * Passes each key starting with prefix, and its value, to the visitor in
+     * alphabet order, until it returns false. Nothing is allocated per key;
+     * the key passed is a view of the enumeration's buffer.
+     * The visitor must not change the trie.
+     * @param prefix the prefix
+     * @param visitor receives the keys
+     * @return the number of keys visited
+     */
+    @SuppressWarnings("unchecked")
+    public int forEachWithPrefix(String prefix, Visitor<Value> visitor) {
+        Cursor c = new Cursor();
+        c.reset(get(root, prefix), prefix, null, null);
+        int visited = 0;
+        Node x;
+        while ((x = c.next()) != null) {
+            visited++;
+            if (!visitor.visit(c.key, (Value) x.val)) break;
         }
-        if (x.val != null) {
-          results.enqueue(prefix.toString());
+        return visited;
+    }
+
+    /**
+     * Returns an iterator over the keys starting with prefix, in alphabet
+     * order, that finds each key only when asked for it.
+     * The trie must not change while the iterator is in use.
+     * @param prefix the prefix
+     * @return an iterator over the keys that start with prefix
+     */
+    public Iterator<String> keyIterator(String prefix) {
+        final Cursor c = new Cursor();
+        c.reset(get(root, prefix), prefix, null, null);
+        return new Iterator<String>() {
+            private Node pending = c.next();   // node of the next key, null at the end
+
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            public String next() {
+                if (pending == null) throw new NoSuchElementException();
+                String key = c.key.toString();
+                pending = c.next();
+                return key;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns the k keys sharing the longest prefixes with query.
+     * Keys are collected below the deepest node matching a prefix of query,
+     * then below each of its ancestors in turn (skipping the subtree already
+     * collected) until k are found, so this costs O(k * depth) rather than
+     * the size of the subtrees.
+     * @param query the query string
+     * @param k the number of keys to return
+     * @return k keys (fewer if the table is smaller), longest shared prefix first
+     */
+    public Queue<String> nearestKeys(String query, int k) {
+        Queue<String> results = new Queue<String>();
+        if (root == null) return results;
+        Node[] path = new Node[query.length() + 1];   // path[d] = node of query's first d characters
+        path[0] = root;
+        int d = 0;
+        while (d < query.length()) {
+            char c = query.charAt(d);
+            Node x = validChars.contains(c) ? path[d].next[validChars.toIndex(c)] : null;
+            if (x == null) break;
+            path[++d] = x;
         }
-        for (int c = 0; c < R; c++) {
-            char ch = validChars.toChar(c);
-            prefix.append(ch);
-            collect(x.next[c], prefix, results);
-            prefix.deleteCharAt(prefix.length() - 1);
+        Cursor c = new Cursor();
+        c.reset(path[d], query.substring(0, d), null, null);
+        collect(c, results, k);
+        for (int i = d - 1; i >= 0 && results.size() < k; i--) {
+            c.reset(path[i], query.substring(0, i), path[i + 1], null);
+            collect(c, results, k);
         }
+        return results;
+    }
+
+    // adds the cursor's keys to results until it holds k
+    private void collect(Cursor c, Queue<String> results, int k) {
+        while (results.size() < k && c.next() != null)
+            results.enqueue(c.key.toString());
     }
 
     /**
@@ -164,34 +272,12 @@ public class RWay<Value> {
      */
     public Queue<String> keysThatMatch(String pattern) {
         Queue<String> results = new Queue<String>();
-        collect(root, new StringBuilder(), pattern, results);
+        Cursor c = new Cursor();
+        c.reset(root, "", null, pattern);
+        collect(c, results, Integer.MAX_VALUE);
         return results;
     }
 
-    private void collect(Node x, StringBuilder prefix, String pattern, Queue<String> results) {
-        if (x == null) return;
-        int d = prefix.length();
-        if (d == pattern.length() && x.val != null)
-            results.enqueue(prefix.toString());
-        if (d == pattern.length())
-            return;
-        char c = pattern.charAt(d);
-        if (c == '.') {
-            for (char ch = 0; ch < R; ch++) {
-                prefix.append(ch);
-                int index = validChars.toIndex(ch);
-                collect(x.next[index], prefix, pattern, results);
-                prefix.deleteCharAt(prefix.length() - 1);
-            }
-        }
-        else {
-            prefix.append(c);
-            int index = validChars.toIndex(c);
-            collect(x.next[index], prefix, pattern, results);
-            prefix.deleteCharAt(prefix.length() - 1);
-        }
-    }
-
     /**
      * Returns the string in the symbol table that is the longest prefix of query,
      * or null, if no such string.
@@ -200,29 +286,16 @@ public class RWay<Value> {
      *     or null if no such string
      * @throws NullPointerException if query is null
      */
-     public String longestPrefixOf(String query) {
-         int length = longestPrefixOf(root, query, 0, -1);
-         if (length == -1) return null;
-         else return query.substring(0, length);
-     }
-
-    // returns the length of the longest string key in the subtrie
-    // rooted at x that is a prefix of the query string,
-    // assuming the first d character match and we have already
-    // found a prefix match of given length (-1 if no such match)
-    private int longestPrefixOf(Node x, String query, int d, int length) {
-        if (x == null) {
-          return length;
-        }
-        if (x.val == null) {
-          length = d;
+    public String longestPrefixOf(String query) {
+        int length = -1;   // length of the longest key found so far
+        Node x = root;
+        for (int d = 0; x != null; d++) {
+            if (x.val != null) length = d;
+            if (d == query.length() || !validChars.contains(query.charAt(d))) break;
+            x = x.next[validChars.toIndex(query.charAt(d))];
         }
-        if (d == query.length()){
-          return length;
-        }
-        char c = query.charAt(d);
-        int index = validChars.toIndex(c);
-        return longestPrefixOf(x.next[index], query, d+1, length);
+        if (length == -1) return null;
+        else return query.substring(0, length);
     }
 
     /**
@@ -231,26 +304,97 @@ public class RWay<Value> {
      * @throws NullPointerException if key is null
      */
     public void delete(String key) {
-        root = delete(root, key, 0);
-    }
-
-    private Node delete(Node x, String key, int d) {
-        if (x == null) return null;
-        if (d == key.length()) {
-            if (x.val != null) n--;
-            x.val = null;
+        Node[] path = new Node[key.length() + 1];
+        Node x = root;
+        int d = 0;
+        while (x != null && d < key.length()) {   // path[d] = node of key's first d characters
+            path[d] = x;
+            int index = validChars.indexOf(key.charAt(d));
+            x = index == -1 ? null : x.next[index];
+            d++;
         }
-        else {
-            char c = key.charAt(d);
-            x.next[c] = delete(x.next[c], key, d+1);
+        if (x == null || x.val == null) return;
+        n--;
+        x.val = null;
+
+        // remove the subtries that are now completely empty, deepest first
+        while (x != null && x.val == null && isLeaf(x)) {
+            if (d == 0) {
+                root = null;
+                break;
+            }
+            d--;
+            path[d].next[validChars.toIndex(key.charAt(d))] = null;
+            x = path[d];
         }
+    }
 
-        // remove subtrie rooted at x if it is completely empty
-        if (x.val != null) return x;
+    private static boolean isLeaf(Node x) {
         for (int c = 0; c < R; c++)
             if (x.next[c] != null)
-                return x;
-        return null;
+                return false;
+        return true;
     }
 
+    /**
+     * Depth-first walk of a subtrie in alphabet order with an explicit
+     * stack. Each frame holds a node and the next child to try; the key of
+     * the current node is built up in a single buffer.
+     */
+    private static class Cursor {
+        private Node[] nodes = new Node[16];    // node at each depth below the start
+        private int[] nextChild = new int[16];  // next child to try at each depth, -1 before the node itself
+        private final StringBuilder key = new StringBuilder();
+        private int depth;                      // top of the stack, -1 when done
+        private Node skip;                      // child of the start node to leave out
+        private String pattern;                 // keys must match it if not null, . matches anything
+
+        void reset(Node start, String prefix, Node skip, String pattern) {
+            key.setLength(0);
+            key.append(prefix);
+            this.skip = skip;
+            this.pattern = pattern;
+            depth = start == null ? -1 : 0;
+            nodes[0] = start;
+            nextChild[0] = -1;
+        }
+
+        // advances to the next node holding a value and returns it, or null at the end
+        Node next() {
+            while (depth >= 0) {
+                Node x = nodes[depth];
+                int c = nextChild[depth];
+                if (c == -1) {
+                    nextChild[depth] = 0;
+                    if (x.val != null && (pattern == null || key.length() == pattern.length())) return x;
+                    continue;
+                }
+                int limit = R;   // children from limit on aren't tried
+                if (pattern != null && key.length() == pattern.length()) {
+                    limit = 0;   // a longer key can't match
+                }
+                else if (pattern != null && pattern.charAt(key.length()) != '.') {
+                    int only = validChars.indexOf(pattern.charAt(key.length()));   // the one child that can match
+                    c = Math.max(c, only);
+                    limit = only + 1;
+                }
+                while (c < limit && (x.next[c] == null || depth == 0 && x.next[c] == skip))
+                    c++;
+                if (c >= limit) {
+                    nodes[depth] = null;
+                    if (depth-- > 0) key.setLength(key.length() - 1);
+                    continue;
+                }
+                nextChild[depth] = c + 1;
+                if (++depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * depth);
+                    nextChild = Arrays.copyOf(nextChild, 2 * depth);
+                }
+                nodes[depth] = x.next[c];
+                nextChild[depth] = -1;
+                key.append(validChars.toChar(c));
+            }
+            return null;
+        }
+    }
 }
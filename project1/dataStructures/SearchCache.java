@@ -0,0 +1,95 @@
+package dataStructures;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *  The SearchCache class remembers the 0-3 results of dictionary searches
+ *  (see DLB.search) for strings packed into int keys, so a string searched
+ *  over and over is looked up in one array read instead of a trie walk.
+ *
+ *  The cache is direct-mapped: a key can only live in the slot picked by
+ *  hashing it, and a new key in that slot replaces the old one. Each slot is
+ *  one int holding the key and its result together, (key << 2) | result, with
+ *  0 meaning empty, so keys must be positive and below 2^29.
+ *
+ *  The cache can be shared by threads without locking. A slot is written in
+ *  one int store, so a reader sees either the old entry or the new one, and
+ *  the key inside the entry tells it which. Losing a racing put only costs a
+ *  repeated search later. Hits and misses are counted with LongAdders so the
+ *  counting doesn't make threads contend.
+ *
+ * @author Craig Mazzotta
+ */
+public class SearchCache {
+    public static final int MAX_KEY = (1 << 29) - 1;  // largest key that fits in a slot
+
+    private final int[] slots;   // (key << 2) | result, 0 if empty
+    private final int mask;      // number of slots - 1
+    private final int shift;     // 32 - lgSlots, keeps the top bits of the hash
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Initializes an empty cache.
+     * @param lgSlots log2 of the number of slots
+     * @throws IllegalArgumentException unless 0 <= lgSlots <= 28
+     */
+    public SearchCache(int lgSlots) {
+        if (lgSlots < 0 || lgSlots > 28)
+            throw new IllegalArgumentException("lgSlots must be between 0 and 28");
+        slots = new int[1 << lgSlots];
+        mask = slots.length - 1;
+        shift = 32 - lgSlots;
+    }
+
+    /**
+     * Returns the cached result for a key.
+     * @param key the key, in [1, MAX_KEY]
+     * @return the result put for key, or -1 if it isn't cached
+     */
+    public int get(int key) {
+        int entry = slots[slot(key)];
+        if (entry >>> 2 == key) {
+            hits.increment();
+            return entry & 3;
+        }
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Caches the result for a key, replacing whatever shared its slot.
+     * @param key the key, in [1, MAX_KEY]
+     * @param result the search result, 0-3
+     */
+    public void put(int key, int result) {
+        slots[slot(key)] = (key << 2) | result;
+    }
+
+    /**
+     * @return the number of gets that found their key
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of gets
+     */
+    public long lookups() {
+        return hits.sum() + misses.sum();
+    }
+
+    /**
+     * @return the fraction of gets that found their key, 0 if there were none
+     */
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    // Fibonacci hashing: keys of nearby strings land far apart
+    private int slot(int key) {
+        return ((key * 0x9E3779B9) >>> shift) & mask;
+    }
+}
@@ -6,23 +6,58 @@ import dataStructures.*;
 /**
 * The class pw_check can be run with the argument of "-find" or "-find";
 *
-* -find generates all valid passwords, storing them in an RWay trie.
-* Methods are genPasswords, validatePassword, hasWord, and storePass.
+* -find generates all valid passwords, writing them to all_passwords.txt.
+* Methods are genPasswords, validatePassword, and storePass.
+* Passing "-parallel" after "-find" splits the search across cores (see ParallelSearch),
+* and "-pruned" cuts invalid prefixes before they are fully enumerated (see PrunedSearch).
+* "-patterns" only generates candidates fitting a class pattern the policy allows (see PatternSearch).
+* "-odometer" steps through candidates keeping class counts and automaton state per
+* position, so each step only redoes the characters that changed (see OdometerSearch).
+* "-markov <corpus>" generates passwords most likely first under a Markov model
+* trained on the corpus, one password per line (see MarkovSearch).
+* "-resume" searches shard by shard, checkpointing after each, and picks up an
+* interrupted run where it stopped (see ResumableSearch).
+* -attack runs the mask and dictionary-plus-rules attacks a real cracker would
+* try, recording when each valid password falls to each (see AttackEngine).
+* "-automaton" finds dictionary words with an Aho-Corasick automaton instead of the DLB.
+* "-policy <file>" reads the password policy from a properties file (see PasswordPolicy)
+* instead of using the default 5 character policy; pass it to -check as well.
 *
 * -check prompts the user for a password, validates it, then attempts to crack it
 * if the password is invalid, it will return a list of 10 passwords sharing a
 * prefix with the password entered.
 * Methods are getPass, runCheck, and checkPass
+* If "-attack" was run, -check also reports how fast the mask and rule attacks
+* guess a valid password, and which way it falls fastest.
+* -check-batch <file> checks every password in the file instead, in parallel,
+* writing the results to check_results.txt (see BatchCheck).
+* Policies with too many possible passwords for all_passwords.idx get a sorted
+* all_passwords.pws instead, which -check maps and searches (see PasswordStore).
 *
-* createDictionary() is used by both -find and -check to populate the DLB with values
+* createDictionary() is used by both -find and -check to populate the DLB with values.
+* The frozen DLB is saved to dictionary.dlb and loaded from there by later runs,
+* until dictionary.txt changes.
 *
 * @author Craig Mazzotta
 */
 
 public class pw_check {
-  public static RWay<Double> validPasswords = new RWay<Double>(); //symbol tree containing valid passwords
-  public static final Alphabet characters = new Alphabet("abcdefghijklmnopqrstuvwxyz0123456789!@$^_*"); //valid characters for a given password
-  public static DLB dictionary = new DLB(); //DLB trie containing words from dictionary.txt
+  public static CompactRWay validPasswords; //symbol tree containing valid passwords
+  public static PasswordPolicy policy = PasswordPolicy.DEFAULT; //what a valid password looks like
+  public static Alphabet characters = policy.alphabet(); //valid characters for a given password
+  public static FrozenDLB dictionary; //frozen DLB trie containing words from dictionary.txt
+  public static PasswordWriter output; //stream to all_passwords.txt while -find runs
+  public static PasswordIndex.Builder indexBuilder; //collects all_passwords.idx while -find runs
+  public static PasswordIndex passwordIndex; //memory-mapped all_passwords.idx for -check, null if not available
+  public static PasswordStore passwordStore; //memory-mapped all_passwords.pws for -check when there is no index, null otherwise
+  public static DirectTable directTable; //passwords indexed directly by code for "-check -direct", null otherwise
+  public static AhoCorasick wordMatcher; //automaton of the words in dictionary.txt and their substituted spellings
+  public static BloomFilter wordFilter; //words short enough to be in a password, checked before the DLB; null if the cache covers every substring
+  public static SearchCache searchCache; //results of dictionary searches made while validating, shared by every thread
+  public static final File SNAPSHOT = new File("dictionary.dlb"); //frozen DLB saved by createDictionary()
+  public static boolean useMatcher; //validate with wordMatcher instead of DLB lookups ("-automaton")
+  private static final ThreadLocal<PasswordValidator> validator = ThreadLocal.withInitial(
+    () -> new PasswordValidator(policy, dictionary, wordFilter, searchCache, useMatcher ? wordMatcher : null)); //scratch space for validatePassword, one per thread
 
   /**
   * @param args Command-line arguments. must be "-find" or "-check".
@@ -44,52 +79,257 @@ public class pw_check {
       System.exit(1);
     }
 
+    String policyFile = optionValue(args, "-policy");
+    if(policyFile != null){
+      loadPolicy(policyFile);
+    }
+
     switch(args[0]){
       case "-find":
         System.out.println("Generating passwords...");
+        useMatcher = hasOption(args, "-automaton");
         createDictionary();
-        genPasswords();
+        if(hasOption(args, "-resume")){ //opens the output itself, keeping finished shards
+          ResumableSearch.genPasswords();
+        } else {
+          openOutput();
+          if(hasOption(args, "-parallel")){
+            ParallelSearch.genPasswords(2);
+          } else if(hasOption(args, "-markov")){
+            String corpus = optionValue(args, "-markov");
+            if(corpus == null || corpus.startsWith("-")){ //the corpus is optional, so the next option isn't one
+              corpus = "dictionary.txt";
+            }
+            MarkovSearch.genPasswords(new File(corpus));
+          } else if(hasOption(args, "-odometer")){
+            OdometerSearch.genPasswords();
+          } else if(hasOption(args, "-patterns")){
+            PatternSearch.genPasswords();
+          } else if(hasOption(args, "-pruned") || policy.length() != 5){ //the nested loops only handle 5 characters
+            PrunedSearch.genPasswords();
+          } else {
+            genPasswords();
+          }
+        }
+        closeOutput();
+        ResumableSearch.CHECKPOINT.delete(); //the run is complete
+        if(searchCache.lookups() > 0){
+          System.out.println("Dictionary search cache: " + searchCache.hits() + " hits of " + searchCache.lookups()
+            + " lookups (" + (100.0 * searchCache.hitRatio()) + "%)");
+        }
         System.out.println("All valid passwords have been generated!");
         break;
       case "-check":
         if(runCheck()){ //-find was already run
           createDictionary();
-          getPasswords();
-          System.out.println("Generating symbol table for valid passwords...");
+          if(!openIndex() && !openStore()){ //no binary index, build the symbol table from all_passwords.txt
+            getPasswords();
+            System.out.println("Generating symbol table for valid passwords...");
+          } else if(passwordIndex != null && hasOption(args, "-direct")){ //trade a one-time load for O(1) lookups
+            System.out.println("Generating direct-addressed table for valid passwords...");
+            directTable = DirectTable.fromIndex(passwordIndex, characters, policy.length());
+          }
+          AttackEngine.openIndexes();
           checkPass();
         } else {
           System.out.println("You must run '-find' before '-check'");
         }
         break;
+      case "-attack":
+        System.out.println("Running attacks...");
+        createDictionary();
+        AttackEngine.run(args);
+        System.out.println("All attacks have been run!");
+        break;
+      case "-check-batch":
+        if(args.length < 2 || args[1].startsWith("-")){
+          System.out.println("Usage: java pw_check -check-batch <file of passwords>");
+        } else if(runCheck()){ //-find was already run
+          createDictionary();
+          if(!openIndex() && !openStore()){ //no binary index, build the symbol table from all_passwords.txt
+            getPasswords();
+          } else if(passwordIndex != null && hasOption(args, "-direct")){
+            directTable = DirectTable.fromIndex(passwordIndex, characters, policy.length());
+          }
+          try {
+            BatchCheck.checkPasswords(new File(args[1]));
+          }
+          catch (IOException e) {
+            System.out.println("Unable to check " + args[1] + ": " + e.getMessage());
+            System.exit(1);
+          }
+        } else {
+          System.out.println("You must run '-find' before '-check-batch'");
+        }
+        break;
       default:
         System.out.println("You must pass either '-find' or '-check' as your argument to begin1");
       }
   }
 
+  /**
+  * Checks the arguments following the mode for the given option
+  *
+  * @param args Command-line arguments
+  * @param option The option to look for, e.g. "-parallel"
+  * @return True if the option was passed
+  */
+  public static boolean hasOption(String[] args, String option) {
+    for(int i = 1; i < args.length; i++){
+      if(args[i].equals(option)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+  * Returns the value given to an option, i.e. the argument following it
+  *
+  * @param args Command-line arguments
+  * @param option The option to look for, e.g. "-policy"
+  * @return The option's value, or null if the option wasn't passed
+  */
+  public static String optionValue(String[] args, String option) {
+    for(int i = 1; i < args.length - 1; i++){
+      if(args[i].equals(option)){
+        return args[i+1];
+      }
+    }
+    return null;
+  }
+
+  /**
+  * Replaces the default policy with one read from a properties file.
+  *
+  * @param fileName The policy file
+  */
+  public static void loadPolicy(String fileName) {
+    try {
+      policy = PasswordPolicy.load(new File(fileName));
+      characters = policy.alphabet();
+    }
+    catch (IOException e) {
+      System.out.println("Unable to read " + fileName + ": " + e.getMessage());
+      System.exit(1);
+    }
+    catch (IllegalArgumentException e) {
+      System.out.println("Invalid policy in " + fileName + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
   /**
   * This method opens the dictionary.txt file and reads in
   * each line (word) and adds it to the DLB trie implementation.
+  * The finished trie is frozen into arrays for the lookups made while validating,
+  * and the words short enough to fit in a password are compiled into wordMatcher.
+  * Those words also go into wordFilter, which screens out most substrings of a
+  * password before the trie is walked, but only when passwords are long enough
+  * to have substrings the search cache can't answer; otherwise it's never asked.
+  * The frozen trie is saved to dictionary.dlb, so later runs load the arrays
+  * instead of rebuilding the DLB, and take the short words from the trie.
   *
   * @throws FileNotFoundEXception If file does not exist in the directory
   */
   public static void createDictionary() {
-    boolean invalid;
-    do {
-      try {
-        File file = new File("dictionary.txt");
-        Scanner infile = new Scanner(file);
-        invalid = false;
-        while (infile.hasNextLine()) {
-          String word = infile.nextLine();
-          boolean added = dictionary.add(word);
+    File file = new File("dictionary.txt");
+    long checksum = checksum(file);
+    dictionary = readSnapshot(file, checksum);
+    if(dictionary == null){ //no snapshot of this version of dictionary.txt, build the DLB
+      DLB words = new DLB();
+      boolean invalid;
+      do {
+        try {
+          Scanner infile = new Scanner(file);
+          invalid = false;
+          while (infile.hasNextLine()) {
+            String word = infile.nextLine().toLowerCase(); //passwords are lowercase, so words are too
+            boolean added = words.add(word);
+          }
+          infile.close();
+
         }
-        infile.close();
+        catch (FileNotFoundException e) {
+          invalid = true;
+        }
+      } while (invalid);
+      dictionary = new FrozenDLB(words);
+      if(checksum == -1){ //dictionary.txt only appeared while the loop above waited for it
+        checksum = checksum(file);
+      }
+      try {
+        dictionary.write(SNAPSHOT, file.length(), checksum);
+      }
+      catch (IOException e) {
+        System.out.println("Unable to write " + SNAPSHOT + ": " + e.getMessage());
+        SNAPSHOT.delete();
+      }
+    }
 
+    Queue<String> shortWords = dictionary.keys(policy.length()); //longer words can't be in a password
+    wordMatcher = new AhoCorasick(characters);
+    searchCache = new SearchCache(16);
+    wordFilter = null;
+    if(policy.length() > PasswordValidator.cacheableLength(policy)){ //some substrings are too long for the cache
+      wordFilter = new BloomFilter(Math.max(1, shortWords.size()), 32); //a few KB, so plenty of bits per word
+    }
+    for(String word : shortWords){
+      if(inAlphabet(word)){
+        wordMatcher.addSubstituted(word, policy.letters(), policy.substitutes());
       }
-      catch (FileNotFoundException e) {
-        invalid = true;
+      if(wordFilter != null){
+        wordFilter.add(word);
       }
-    } while (invalid);
+    }
+    wordMatcher.compile();
+  }
+
+  /**
+  * Loads the dictionary snapshot written by an earlier run, if it was made
+  * from the current dictionary.txt (same length and checksum).
+  *
+  * @param source dictionary.txt
+  * @param checksum The checksum of dictionary.txt, -1 if it couldn't be read
+  * @return The frozen DLB, or null if it has to be built from dictionary.txt
+  */
+  private static FrozenDLB readSnapshot(File source, long checksum) {
+    if(checksum == -1){
+      return null;
+    }
+    try {
+      return FrozenDLB.read(SNAPSHOT, source.length(), checksum);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to read " + SNAPSHOT + " (" + e.getMessage() + "), rebuilding it");
+      return null;
+    }
+  }
+
+  /**
+  * @param source dictionary.txt
+  * @return The CRC-32 of the file, or -1 if it can't be read
+  */
+  private static long checksum(File source) {
+    try {
+      return FrozenDLB.checksum(source);
+    }
+    catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+  * @param word A word from the dictionary
+  * @return True if every character of the word can be in a password
+  */
+  private static boolean inAlphabet(String word) {
+    for(int i = 0; i < word.length(); i++){
+      if(!characters.contains(word.charAt(i))){
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -97,6 +337,7 @@ public class pw_check {
   * the key,value pair in the RWay trie as (password,time);
   */
   public static void getPasswords() {
+    validPasswords = new CompactRWay(characters);
     boolean invalid;
     String line;
     String split[];
@@ -124,40 +365,38 @@ public class pw_check {
   }
 
   /**
-  * This function uses exhaustive search to populate an RWay trie with
-  * all possible password combinations.
-  *
-  * @param dictionary The DLB trie dictionary to pass into validatePassword()
-  * @return validPass The RWay trie containing all valid passwords
+  * This function uses exhaustive search to find all possible password
+  * combinations, storing each valid one with storePass().
   */
   public static void genPasswords(){
     StringBuilder attempt = new StringBuilder(5);
     long startTime = System.nanoTime(); //begin timing password generation
-    for(int i = 0; i < 42; i++){ //first char in password
+    int R = characters.radix(); //number of valid characters
+    for(int i = 0; i < R; i++){ //first char in password
       // if(characters.toChar(i)=='a' || characters.toChar(i)=='i' || characters.toChar(i)=='1' || characters.toChar(i)=='4'){
       //   continue;
       // }else{
         attempt.replace(0,1,String.valueOf(characters.toChar(i)));
       //}
-       for(int j = 0; j < 42; j++){ //second char
+       for(int j = 0; j < R; j++){ //second char
         //  if(characters.toChar(j)=='a' || characters.toChar(j)=='i' || characters.toChar(j)=='1' || characters.toChar(j)=='4'){
         //    continue;
         //  }else{
            attempt.replace(1,2,String.valueOf(characters.toChar(j)));
          //}
-        for(int k = 0; k < 42; k++){ //third char
+        for(int k = 0; k < R; k++){ //third char
           // if(characters.toChar(k)=='a' || characters.toChar(k)=='i' || characters.toChar(k)=='1' || characters.toChar(k)=='4'){
           //   continue;
           // }else{
             attempt.replace(2,3,String.valueOf(characters.toChar(k)));
           //}
-          for(int l = 0; l < 42; l++){ //fourth char
+          for(int l = 0; l < R; l++){ //fourth char
             // if(characters.toChar(l)=='a' || characters.toChar(l)=='i' || characters.toChar(l)=='1' || characters.toChar(l)=='4'){
             //   continue;
             // }else{
               attempt.replace(3,4,String.valueOf(characters.toChar(l)));
             // }
-            for(int m = 0; m < 42; m++){ //fifth char
+            for(int m = 0; m < R; m++){ //fifth char
               // if(characters.toChar(m)=='a' || characters.toChar(m)=='i' || characters.toChar(m)=='1' || characters.toChar(m)=='4'){
               //   continue;
               // }else{
@@ -165,9 +404,7 @@ public class pw_check {
               //}
               if(validatePassword(attempt)){
                 double estimatedTime = ((System.nanoTime() - startTime)/1000000.0); //calculate time to find the password
-                String password = attempt.toString();
-                validPasswords.put(password, estimatedTime);
-                storePass(password, estimatedTime);
+                storePass(attempt.toString(), estimatedTime);
               }
             }
           }
@@ -177,177 +414,179 @@ public class pw_check {
   }
 
   /**
-  * This function takes in a password and validates it.
-  * The password must be 5 characters long containing:
+  * This function takes in a password and validates it against the policy.
+  * Under the default policy the password must be 5 characters long containing:
   *   1-3 letters
   *   1-2 numbers (0-9)
   *   1-2 symbols ("!", "@", "$", "^", "_", or "*")
   * and can't contain numbers for letters ("7" for "t", "4" for "a", "0" for "o", "3" for "e", "1" for "i", "1" for "l", or "$" for "s") to form a word
   *
+  * The work is done by the calling thread's PasswordValidator, which reuses
+  * its scratch buffers so validating a password allocates nothing.
+  *
   * @param password The password to be validated
-  * @param characters The object containing valid characters.
-  * @param dictionary The dictionary with words a password can't contain
   * @return True if the password is valid, otherwise false
   */
   public static boolean validatePassword(StringBuilder password) {
-    int let = 0; //number of letters in the given password
-    int num = 0; //number of numbers in the given password
-    int sym = 0; //number of symbols in the given password
-    Queue<Integer> breakPts = new Queue<Integer>(); //store location of word break points
-    Queue<Integer> oneIndex = new Queue<Integer>(); //location of 1's in password to be used as 'i' and 'l' for hasWord()
+    return validator.get().validate(password);
+  }
 
-    if(password.length() > 5 || password.length() < 5){ //password is of incorrect length
-      return false;
-    }
+  /**
+  * Opens "all_passwords.txt" for -find, replacing the results of any earlier run.
+  * Passwords are streamed to it through storePass() and storeBatch() until closeOutput(),
+  * which also writes them to the binary index "all_passwords.idx".
+  */
+  public static void openOutput() {
+    openOutput(0);
+  }
 
-    boolean afterLetter = true; //true if previous letter was a letter or it's the start of the word
-    int checkLnI=0;
-    for(int i = 0; i < 5; i++){ //iterate through each character of the passsword to count occurences
-      char c = password.charAt(i);
-      if(characters.toIndex(c) <= 25) { //indices [0,25] are letters
-        let++;
-        afterLetter = true;
-      } else if (characters.toIndex(c) <= 35){ //indices [26,35] are numbers
-        num++;
-        if(afterLetter){ //change value of c to corresponding letter
-          switch(c){
-            case '7':
-              password.setCharAt(i, 't');
-              break;
-            case '4':
-              password.setCharAt(i, 'a');
-              break;
-            case '0':
-              password.setCharAt(i, 'o');
-              break;
-            case '3':
-              password.setCharAt(i, 'e');
-              break;
-            case '1':
-              oneIndex.enqueue(i); //store location of 1
-              break;
-            default: //the num was not changed, store index
-              afterLetter = false;
-              breakPts.enqueue(i);
-              break;
-          }
-        }
-      } else if (characters.toIndex(c) <= 41) { //indices [36,41] are symbols
-        sym++;
-        switch(c){
-          case '$': //'$' can be substituted to form a word
-            break;
-          default: //the sym was not changed, store index
-            breakPts.enqueue(i);
-        }
-        afterLetter = false;
-      } else {
-        return false; //password contains an INVALID character
+  /**
+  * Opens "all_passwords.txt" for -find, keeping the start of an earlier run's output.
+  * The file is cut to the given length, dropping any partial line at its end,
+  * and the passwords kept are added to the index before new ones are written.
+  * Replacing the file also deletes the checkpoint of any earlier -resume run,
+  * which no longer describes it.
+  *
+  * @param keep The number of bytes of the file to keep, 0 to replace it
+  */
+  public static void openOutput(long keep) {
+    File file = new File("all_passwords.txt");
+    if(keep == 0){ //a fresh run, so a later -resume mustn't pick up where an earlier run stopped
+      ResumableSearch.CHECKPOINT.delete();
+    }
+    try {
+      indexBuilder = new PasswordIndex.Builder(characters, policy.length());
+    }
+    catch (IllegalArgumentException e) { //too many possible passwords to number them with an int
+      System.out.println(e.getMessage() + ", writing all_passwords.pws instead of all_passwords.idx");
+      indexBuilder = null;
+    }
+    new File("all_passwords.idx").delete(); //would describe an earlier run, until closeOutput() writes this one's
+    new File("all_passwords.pws").delete(); //would describe an earlier run
+    try {
+      if(keep > 0){
+        keepPasswords(file, keep);
       }
+      output = new PasswordWriter(file, keep > 0, indexBuilder, 16);
     }
-
-    if (let > 3 || let < 1){ //password contains INVALID number of letters
-      return false;
+    catch (IOException e) {
+      System.out.println("Unable to open all_passwords.txt: " + e.getMessage());
+      System.exit(1);
     }
-    if (num > 2 || num < 1){ //password contains INVALID number of numbers
-      return false;
+  }
+
+  /**
+  * Truncates the output of an earlier run and adds what is kept to the index.
+  *
+  * @param file The output file
+  * @param keep The number of bytes to keep
+  * @throws IOException If the file can't be truncated or read
+  */
+  private static void keepPasswords(File file, long keep) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(keep);
     }
-    if((let + num) >= 5){ //contains valid let & num
-      return false;
+    if(indexBuilder == null){
+      return;
     }
-    if (sym > 2 || sym < 1){ //password contains INVALID number of symbols
-      return false;
-    } else {  //pasword contains a VALID number of each type of character
-      if (hasWord(password, breakPts, oneIndex)){ //password contains a word, therefore it's INVALID
-        return false;
-      } else {
-        return true;
+    try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+      String line;
+      while((line = in.readLine()) != null){
+        int comma = line.indexOf(',');
+        indexBuilder.add(line, 0, Double.parseDouble(line.substring(comma+1)));
       }
     }
+  }
 
+  /**
+  * Writes out any passwords still buffered, closes "all_passwords.txt",
+  * and writes "all_passwords.idx", or "all_passwords.pws" if there are too
+  * many possible passwords for the index.
+  */
+  public static void closeOutput() {
+    try {
+      output.close();
+    }
+    catch (IOException e) {
+      System.out.println("Unable to write to all_passwords.txt: " + e.getMessage());
+      System.exit(1);
+    }
+    if(indexBuilder == null){
+      writeStore();
+      return;
+    }
+    try {
+      indexBuilder.write(new File("all_passwords.idx"));
+      indexBuilder = null;
+    }
+    catch (IOException e) {
+      System.out.println("Unable to write all_passwords.idx: " + e.getMessage());
+      System.exit(1);
+    }
   }
 
   /**
-  * This function does a dictionary lookup on a possible word.
-  * Possible words are from 0 to breakPt[0], between each value in breakPt
-  * and the last index of breakPt to 4.
-  *
-  * @param password The password being checked for a word from validatePassword()
-  * @param breakPts Queue containing location of symbols/nums within password
-  * @param dictionary The DLB trie containing words for the comparison
-  * @param oneIndex Queue containing location of a '1' in the word
-  * @return hasWord True if the password contains a word
+  * Writes "all_passwords.pws" from the finished "all_passwords.txt", for
+  * policies whose passwords can't be numbered with an int. The passwords are
+  * sorted on disk in runs, so this works for more passwords than fit in memory.
   */
-  public static boolean hasWord(StringBuilder password, Queue<Integer> breakPts, Queue<Integer> oneIndex){
-    boolean hasWord = false;
-    int divides = breakPts.size(); //number of break points in password
-    Queue<String> check = new Queue<String>(); //queue to store words to lookup
-
-    int j = 0; //index to start dictionary lookup
-    for (int i = 0; i < divides; i++){
-      int wordEnd = breakPts.dequeue(); //index of next break point
-      if(wordEnd == 0){ //first character is a break point
-        j++;
-      } else {
-        for(int k=j; k<wordEnd+1; k++){ //generate all substrings between break points
-          int end = k+1;
-          while(end<wordEnd+1){
-            check.enqueue(password.substring(k,end));
-            if(oneIndex.size() > 0){
-              int index = oneIndex.peek();
-              password.replace(index,index+1, "i"); //substitue i for 1 and add substring
-              check.enqueue(password.substring(k,end));
-              password.replace(index, index+1, "l"); //substitute l for 1 and add substring
-              check.enqueue(password.substring(k,end));
-              password.replace(index, index+1, "1"); //restore originial word
-            }
-            end++;
-          }
-          if(oneIndex.size()>0){
-            oneIndex.dequeue();
-          }
-        }
-      }
-      j = wordEnd + 1;
-    }
-    //lookup each possible word found in previous for loop
-    for(int k = 0; k < check.size()-1; k++) {
-      StringBuilder word = new StringBuilder(check.dequeue());
-      int result = dictionary.search(word);
-      if (result == 0 || result == 1){ //string in question is not a word
-        hasWord = false;
-      } else if (result == 2 || result == 3) { //string in question is a word
-        hasWord = true;
-        k = check.size(); //found a word leave loop
+  private static void writeStore() {
+    PasswordStore.Builder store;
+    try {
+      store = new PasswordStore.Builder(characters, policy.length());
+    }
+    catch (IllegalArgumentException e) { //too many possible passwords to number them with a long
+      System.out.println(e.getMessage() + ", writing all_passwords.txt only");
+      return;
+    }
+    File file = new File("all_passwords.pws");
+    try (BufferedReader in = new BufferedReader(new FileReader("all_passwords.txt"), 1 << 16)) {
+      String line;
+      while((line = in.readLine()) != null){
+        int comma = line.indexOf(',');
+        store.add(line, 0, Double.parseDouble(line.substring(comma+1)));
       }
+      System.out.println("Wrote " + store.write(file) + " passwords to all_passwords.pws");
+    }
+    catch (IOException e) {
+      System.out.println("Unable to write all_passwords.pws: " + e.getMessage());
+      file.delete();
+      System.exit(1);
     }
-    return hasWord;
   }
 
   /**
   * This function takes a password(key) and time(value) pair and stores
   * it in "all_passwords.txt" in the format password,time.
+  * Lines are buffered and written in large batches (see PasswordWriter).
   *
   * @param password The valid password found
   * @param time The time it took to find the password
-  * @throws IOException If file can't be written to
   */
   public static void storePass(String password, double time) {
-    boolean invalid;
-    int numLines = 0;
-    do {
-      try {
-        File file = new File("all_passwords.txt");
-        FileWriter writer = new FileWriter(file, true);
-        invalid = false;
+    try {
+      output.write(password, time);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to write to all_passwords.txt: " + e.getMessage());
+      System.exit(1);
+    }
+  }
 
-        writer.write(password+","+time+"\n");
-        writer.close();
-      }
-      catch (IOException e1) {
-        invalid = true;
-      }
-    } while (invalid);
+  /**
+  * Stores a batch of password,time lines.
+  * Unlike storePass(), this can be called from any thread.
+  *
+  * @param batch The lines to store
+  */
+  public static void storeBatch(PasswordWriter.Batch batch) {
+    try {
+      output.submit(batch);
+    }
+    catch (IOException e) {
+      System.out.println("Unable to write to all_passwords.txt: " + e.getMessage());
+      System.exit(1);
+    }
   }
 
   /**
@@ -367,6 +606,58 @@ public class pw_check {
     }
   }
 
+  /**
+  * Memory-maps the binary index "all_passwords.idx" written by -find, so
+  * -check can answer lookups without parsing all_passwords.txt.
+  *
+  * @return True if the index was opened, false if it is missing or unreadable
+  */
+  public static boolean openIndex() {
+    File file = new File("all_passwords.idx");
+    if(!file.exists()){
+      return false;
+    }
+    try {
+      passwordIndex = PasswordIndex.open(file, characters);
+      if(passwordIndex.length() != policy.length()){
+        System.out.println("all_passwords.idx holds passwords of length " + passwordIndex.length() + ", using all_passwords.txt");
+        passwordIndex = null;
+        return false;
+      }
+      return true;
+    }
+    catch (IOException e) {
+      System.out.println("Unable to read all_passwords.idx (" + e.getMessage() + "), using all_passwords.txt");
+      return false;
+    }
+  }
+
+  /**
+  * Memory-maps the sorted store "all_passwords.pws" written by -find for
+  * policies too big for "all_passwords.idx".
+  *
+  * @return True if the store was opened, false if it is missing or unreadable
+  */
+  public static boolean openStore() {
+    File file = new File("all_passwords.pws");
+    if(!file.exists()){
+      return false;
+    }
+    try {
+      passwordStore = PasswordStore.open(file, characters);
+      if(passwordStore.length() != policy.length()){
+        System.out.println("all_passwords.pws holds passwords of length " + passwordStore.length() + ", using all_passwords.txt");
+        passwordStore = null;
+        return false;
+      }
+      return true;
+    }
+    catch (IOException e) {
+      System.out.println("Unable to read all_passwords.pws (" + e.getMessage() + "), using all_passwords.txt");
+      return false;
+    }
+  }
+
   /**
   * Prompts user for a password and validates it until they wish to stop
   *
@@ -380,28 +671,36 @@ public class pw_check {
       System.out.println("Enter a password: ");
       String input = keyboard.nextLine();
       input = input.toLowerCase();
-      userPass.replace(0,5,input);
+      userPass.replace(0,userPass.length(),input);
 
       if(validatePassword(userPass)){ //user entered a valid password
-        time = validPasswords.get(input); //return time it took to guess
-        System.out.println("It took " + time + "ms to crack your password!");
+        if(directTable != null){
+          time = directTable.get(input);
+          System.out.println("It took " + (float) time + "ms to crack your password!"); //return time it took to guess
+        } else if(passwordIndex != null){
+          time = passwordIndex.get(input);
+          System.out.println("It took " + (float) time + "ms to crack your password!"); //return time it took to guess
+        } else if(passwordStore != null){
+          time = passwordStore.get(input);
+          System.out.println("It took " + (float) time + "ms to crack your password!"); //return time it took to guess
+        } else {
+          time = validPasswords.get(input); //return time it took to guess
+          System.out.println("It took " + time + "ms to crack your password!");
+        }
+        AttackEngine.printFastest(input, (float) time); //how attacks other than the exhaustive search do
+      } else if(directTable != null){ //password is invalid, return 10 passwords with a shared prefix
+        System.out.println("Invalid password, here are 10 similar passwords:");
+        printSimilarDirect(input);
+      } else if(passwordIndex != null){ //password is invalid, return 10 passwords with a shared prefix
+        System.out.println("Invalid password, here are 10 similar passwords:");
+        printSimilar(input);
+      } else if(passwordStore != null){ //password is invalid, return 10 passwords with a shared prefix
+        System.out.println("Invalid password, here are 10 similar passwords:");
+        printSimilarStore(input);
       } else { //password is invalid, return 10 passwords with a shared prefix
         System.out.println("Invalid password, here are 10 similar passwords:");
-        StringBuilder prefix = new StringBuilder(validPasswords.longestPrefixOf(input));
-        Queue<String> sharedPrefixes = new Queue<String>();
-        sharedPrefixes = validPasswords.keysWithPrefix(prefix.toString());
-
-        while (sharedPrefixes.size() < 10){ //not 10 passwords present, so search a smaller prefix
-          try{
-            prefix.deleteCharAt(prefix.length()-1);
-            sharedPrefixes = validPasswords.keysWithPrefix(prefix.toString());
-          }
-          catch(StringIndexOutOfBoundsException e){
-            sharedPrefixes = validPasswords.keys();
-            break;
-          }
-        }
-        for(int j = 0; j<10; j++){ //print 10 passwords to the user
+        Queue<String> sharedPrefixes = validPasswords.nearestKeys(input, 10); //10 passwords sharing the longest prefix
+        while(!sharedPrefixes.isEmpty()){ //print 10 passwords to the user
           System.out.println("  "+sharedPrefixes.peek()+" took "+ validPasswords.get(sharedPrefixes.dequeue()) + " ms to crack");
         }
       }
@@ -415,4 +714,73 @@ public class pw_check {
       }
     } while(cont);
   }
+
+  /**
+  * Prints 10 passwords from the binary index sharing the longest possible
+  * prefix with the entered password. Passwords sharing a prefix are one
+  * contiguous run of the index, so no keys are collected.
+  *
+  * @param input The invalid password entered by the user
+  */
+  public static void printSimilar(String input) {
+    String prefix = passwordIndex.longestPrefixOf(input);
+    int start = passwordIndex.prefixStart(prefix);
+    int end = passwordIndex.prefixEnd(prefix);
+    while(end - start < 10 && prefix.length() > 0){ //not 10 passwords present, so search a smaller prefix
+      prefix = prefix.substring(0, prefix.length()-1);
+      start = passwordIndex.prefixStart(prefix);
+      end = passwordIndex.prefixEnd(prefix);
+    }
+    for(int j = start; j < end && j < start+10; j++){ //print 10 passwords to the user
+      System.out.println("  "+passwordIndex.key(j)+" took "+ passwordIndex.time(j) + " ms to crack");
+    }
+  }
+
+  /**
+  * Prints 10 passwords from the sorted store sharing the longest possible
+  * prefix with the entered password, scanning the prefix's run of the
+  * mapped file the same way printSimilar() does the index.
+  *
+  * @param input The invalid password entered by the user
+  */
+  public static void printSimilarStore(String input) {
+    String prefix = passwordStore.longestPrefixOf(input);
+    long start = passwordStore.prefixStart(prefix);
+    long end = passwordStore.prefixEnd(prefix);
+    while(end - start < 10 && prefix.length() > 0){ //not 10 passwords present, so search a smaller prefix
+      prefix = prefix.substring(0, prefix.length()-1);
+      start = passwordStore.prefixStart(prefix);
+      end = passwordStore.prefixEnd(prefix);
+    }
+    for(long j = start; j < end && j < start+10; j++){ //print 10 passwords to the user
+      System.out.println("  "+passwordStore.key(j)+" took "+ passwordStore.time(j) + " ms to crack");
+    }
+  }
+
+  /**
+  * Prints 10 passwords from the direct-addressed table sharing the longest
+  * possible prefix with the entered password. A prefix is a range of codes,
+  * so its passwords are counted with two ranks and walked with next().
+  *
+  * @param input The invalid password entered by the user
+  */
+  public static void printSimilarDirect(String input) {
+    StringBuilder prefix = new StringBuilder();
+    for(int d = 0; d < input.length() && d < policy.length() && characters.contains(input.charAt(d)); d++){
+      prefix.append(input.charAt(d));
+    }
+    while(directTable.countWithPrefix(prefix.toString()) < 10 && prefix.length() > 0){ //not 10 passwords present, so search a smaller prefix
+      prefix.deleteCharAt(prefix.length()-1);
+    }
+    int code = directTable.prefixLow(prefix.toString());
+    int high = directTable.prefixHigh(prefix.toString());
+    for(int j = 0; j < 10; j++){ //print 10 passwords to the user
+      code = directTable.next(code);
+      if(code == -1 || code >= high){
+        break;
+      }
+      System.out.println("  "+directTable.decode(code)+" took "+ directTable.get(code) + " ms to crack");
+      code++;
+    }
+  }
 }